@@ -0,0 +1,112 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.CallableExecutors;
+import org.sonatype.sisu.charger.ChargeStrategy;
+import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
+
+/**
+ * Allocations per charge, with ammo submitted as "future" (the executor wraps every ammo into a future of it's own) or
+ * as "lean" (the executor is an {@link Executor} too, and ammo is executed as is, being it's own future). Meant to be
+ * run with the GC profiler, and compare the {@code gc.alloc.rate.norm} (bytes per charge) of the two:
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar AllocationBenchmark -prof gc
+ * </pre>
+ * 
+ * @author cstamas
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class AllocationBenchmark
+{
+    @Param( { "allArrived", "firstArrived" } )
+    public String strategy;
+
+    @Param( { "1", "10", "100" } )
+    public int ammoCount;
+
+    @Param( { "direct", "pool" } )
+    public String executor;
+
+    @Param( { "future", "lean" } )
+    public String submission;
+
+    private ExecutorService pool;
+
+    private CallableExecutor callableExecutor;
+
+    private ChargeStrategy chargeStrategy;
+
+    private Charger charger;
+
+    private List<Callable<Integer>> callables;
+
+    @Setup
+    public void setup()
+    {
+        final boolean lean = "lean".equals( submission );
+
+        if ( "pool".equals( executor ) )
+        {
+            pool = Charges.pool();
+            callableExecutor = lean ? CallableExecutors.fromExecutor( pool ) : Charges.executor( pool );
+        }
+        else
+        {
+            callableExecutor = lean ? CallableExecutors.fromExecutor( new Executor()
+            {
+                @Override
+                public void execute( final Runnable command )
+                {
+                    command.run();
+                }
+            } ) : DirectCallableExecutor.INSTANCE;
+        }
+
+        chargeStrategy = Charges.strategy( strategy, ammoCount );
+
+        charger = new DefaultCharger();
+
+        callables = Charges.ammo( ammoCount, "submission", 0 );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if ( pool != null )
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public List<Integer> submitAndGetResult()
+        throws Exception
+    {
+        return charger.submit( callables, chargeStrategy, callableExecutor ).getResult();
+    }
+}
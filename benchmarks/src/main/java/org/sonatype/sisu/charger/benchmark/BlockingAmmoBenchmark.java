@@ -0,0 +1,130 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.ChargeFuture;
+import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.internal.AllArrivedChargeStrategy;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
+import org.sonatype.sisu.charger.internal.VirtualThreadCallableExecutor;
+
+/**
+ * Charges of blocking ammo (each sleeping, as if waiting for a remote repository) on a cached platform thread pool
+ * versus on virtual threads. Virtual threads need Java 21 or later to run it, on older Java the "virtual" executor
+ * falls back to platform threads too. Run it with several threads (ie. {@code -t 8}) to have many charges in flight.
+ * 
+ * @author cstamas
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class BlockingAmmoBenchmark
+{
+    @Param( { "cached", "virtual" } )
+    public String executor;
+
+    @Param( { "10", "100", "1000" } )
+    public int ammoCount;
+
+    @Param( { "1" } )
+    public int ammoMillis;
+
+    private ExecutorService cachedPool;
+
+    private VirtualThreadCallableExecutor virtualExecutor;
+
+    private CallableExecutor callableExecutor;
+
+    private Charger charger;
+
+    private List<Callable<String>> callables;
+
+    @Setup
+    public void setup()
+    {
+        if ( "virtual".equals( executor ) )
+        {
+            virtualExecutor = new VirtualThreadCallableExecutor();
+            callableExecutor = virtualExecutor;
+        }
+        else
+        {
+            cachedPool = Executors.newCachedThreadPool();
+            callableExecutor = new CallableExecutor()
+            {
+                @Override
+                public <T> Future<T> submit( final Callable<T> task )
+                {
+                    return cachedPool.submit( task );
+                }
+            };
+        }
+
+        charger = new DefaultCharger();
+
+        callables = new ArrayList<Callable<String>>( ammoCount );
+
+        for ( int i = 0; i < ammoCount; i++ )
+        {
+            final String payload = "ammo" + i;
+
+            callables.add( new Callable<String>()
+            {
+                @Override
+                public String call()
+                    throws Exception
+                {
+                    Thread.sleep( ammoMillis );
+
+                    return payload;
+                }
+            } );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if ( cachedPool != null )
+        {
+            cachedPool.shutdownNow();
+        }
+
+        if ( virtualExecutor != null )
+        {
+            virtualExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public List<String> allArrived()
+        throws Exception
+    {
+        final ChargeFuture<String> future =
+            charger.submit( callables, AllArrivedChargeStrategy.INSTANCE, callableExecutor );
+
+        return future.getResult();
+    }
+}
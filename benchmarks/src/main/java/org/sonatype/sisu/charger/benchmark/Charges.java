@@ -0,0 +1,129 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.ChargeStrategy;
+import org.sonatype.sisu.charger.internal.AllArrivedChargeStrategy;
+import org.sonatype.sisu.charger.internal.FirstArrivedChargeStrategy;
+import org.sonatype.sisu.charger.internal.FirstArrivedInOrderChargeStrategy;
+import org.sonatype.sisu.charger.internal.QuorumChargeStrategy;
+
+/**
+ * Fixtures shared by benchmarks: strategies, ammo and executors, selected by name from JMH parameters.
+ * 
+ * @author cstamas
+ */
+public final class Charges
+{
+    private Charges()
+    {
+    }
+
+    /**
+     * Returns the strategy of given name: "allArrived", "firstArrived", "firstArrivedInOrder" or "quorum" (being the
+     * half of the ammo, at least one).
+     * 
+     * @param name
+     * @param ammoCount
+     * @return
+     */
+    public static ChargeStrategy strategy( final String name, final int ammoCount )
+    {
+        if ( "allArrived".equals( name ) )
+        {
+            return AllArrivedChargeStrategy.INSTANCE;
+        }
+        else if ( "firstArrived".equals( name ) )
+        {
+            return FirstArrivedChargeStrategy.INSTANCE;
+        }
+        else if ( "firstArrivedInOrder".equals( name ) )
+        {
+            return FirstArrivedInOrderChargeStrategy.INSTANCE;
+        }
+        else if ( "quorum".equals( name ) )
+        {
+            return new QuorumChargeStrategy( Math.max( 1, ammoCount / 2 ) );
+        }
+
+        throw new IllegalArgumentException( "Unknown strategy " + name );
+    }
+
+    /**
+     * Returns ammo completing in given order: "submission", "reverse" or "random" (with fixed seed), if executed in
+     * parallel. Ammo of rank N in completion order burns N times given tokens of CPU.
+     * 
+     * @param ammoCount
+     * @param completionOrder
+     * @param tokensPerRank
+     * @return
+     */
+    public static List<Callable<Integer>> ammo( final int ammoCount, final String completionOrder,
+                                                final long tokensPerRank )
+    {
+        final List<Integer> ranks = new ArrayList<Integer>( ammoCount );
+
+        for ( int i = 0; i < ammoCount; i++ )
+        {
+            ranks.add( i );
+        }
+
+        if ( "reverse".equals( completionOrder ) )
+        {
+            Collections.reverse( ranks );
+        }
+        else if ( "random".equals( completionOrder ) )
+        {
+            Collections.shuffle( ranks, new Random( 42 ) );
+        }
+        else if ( !"submission".equals( completionOrder ) )
+        {
+            throw new IllegalArgumentException( "Unknown completion order " + completionOrder );
+        }
+
+        final List<Callable<Integer>> result = new ArrayList<Callable<Integer>>( ammoCount );
+
+        for ( int i = 0; i < ammoCount; i++ )
+        {
+            result.add( new SpinningCallable<Integer>( ranks.get( i ) * tokensPerRank, i ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a CallableExecutor backed by given ExecutorService.
+     * 
+     * @param executorService
+     * @return
+     */
+    public static CallableExecutor executor( final ExecutorService executorService )
+    {
+        return new CallableExecutor()
+        {
+            @Override
+            public <T> Future<T> submit( final Callable<T> task )
+            {
+                return executorService.submit( task );
+            }
+        };
+    }
+
+    /**
+     * Returns a fixed thread pool of core count size.
+     * 
+     * @return
+     */
+    public static ExecutorService pool()
+    {
+        return Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+    }
+}
@@ -0,0 +1,89 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.ChargeStrategy;
+import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
+
+/**
+ * Many charges in flight at once: 16 benchmark threads (override with {@code -t}) submitting charges to one shared
+ * charger and one shared pool of core count threads, so charges contend on the pool's queue and interleave on it's
+ * workers. Compare the throughput against {@link StrategyBenchmark} run with one thread.
+ * 
+ * @author cstamas
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Threads( 16 )
+@Fork( 1 )
+public class ConcurrentChargesBenchmark
+{
+    @Param( { "allArrived", "firstArrived", "firstArrivedInOrder", "quorum" } )
+    public String strategy;
+
+    @Param( { "10", "100" } )
+    public int ammoCount;
+
+    @Param( { "random" } )
+    public String completionOrder;
+
+    @Param( { "10" } )
+    public long tokensPerRank;
+
+    private ExecutorService pool;
+
+    private CallableExecutor callableExecutor;
+
+    private ChargeStrategy chargeStrategy;
+
+    private Charger charger;
+
+    private List<Callable<Integer>> callables;
+
+    @Setup
+    public void setup()
+    {
+        pool = Charges.pool();
+        callableExecutor = Charges.executor( pool );
+
+        chargeStrategy = Charges.strategy( strategy, ammoCount );
+
+        charger = new DefaultCharger();
+
+        callables = Charges.ammo( ammoCount, completionOrder, tokensPerRank );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public List<Integer> submitAndGetResult()
+        throws Exception
+    {
+        return charger.submit( callables, chargeStrategy, callableExecutor ).getResult();
+    }
+}
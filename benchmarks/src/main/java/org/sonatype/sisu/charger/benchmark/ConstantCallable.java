@@ -0,0 +1,25 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Callable doing no work, just delivering a constant payload (or bailing out by returning null).
+ * 
+ * @author cstamas
+ */
+public class ConstantCallable<E>
+    implements Callable<E>
+{
+    private final E payload;
+
+    public ConstantCallable( final E payload )
+    {
+        this.payload = payload;
+    }
+
+    @Override
+    public E call()
+    {
+        return payload;
+    }
+}
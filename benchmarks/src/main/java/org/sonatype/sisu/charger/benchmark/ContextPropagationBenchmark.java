@@ -0,0 +1,120 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.internal.AllArrivedChargeStrategy;
+import org.sonatype.sisu.charger.internal.Charge;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
+import org.sonatype.sisu.charger.internal.NopExceptionHandler;
+import org.sonatype.sisu.charger.shiro.ShiroContextPropagator;
+
+/**
+ * Cost of executing charges as a Shiro Subject: "none" executes them with no Subject, "associateWith" wraps every
+ * callable with {@link Subject#associateWith(Callable)} (as Shiro aware charges did), and "propagator" attaches the
+ * Subject to the charge once, to be bound around every execution by {@link ShiroContextPropagator}. Add
+ * {@code -prof gc} to compare allocations per charge:
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar ContextPropagationBenchmark -prof gc
+ * </pre>
+ * 
+ * @author cstamas
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ContextPropagationBenchmark
+{
+    @Param( { "none", "associateWith", "propagator" } )
+    public String context;
+
+    @Param( { "1", "10", "100" } )
+    public int ammoCount;
+
+    @Param( { "direct", "pool" } )
+    public String executor;
+
+    private ExecutorService pool;
+
+    private CallableExecutor callableExecutor;
+
+    private Charger charger;
+
+    private Subject subject;
+
+    private List<Callable<Integer>> callables;
+
+    @Setup
+    public void setup()
+    {
+        if ( "pool".equals( executor ) )
+        {
+            pool = Charges.pool();
+            callableExecutor = Charges.executor( pool );
+        }
+        else
+        {
+            callableExecutor = DirectCallableExecutor.INSTANCE;
+        }
+
+        charger = new DefaultCharger();
+
+        subject =
+            new Subject.Builder( new DefaultSecurityManager() ).principals(
+                new SimplePrincipalCollection( "benchmark", "benchmark" ) ).authenticated( true ).buildSubject();
+
+        callables = Charges.ammo( ammoCount, "submission", 0 );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if ( pool != null )
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public List<Integer> submitAndGetResult()
+        throws Exception
+    {
+        final Charge<Integer> charge = new Charge<Integer>( AllArrivedChargeStrategy.INSTANCE, ammoCount );
+
+        if ( "propagator".equals( context ) )
+        {
+            charge.addContext( ShiroContextPropagator.INSTANCE, subject );
+        }
+
+        for ( Callable<Integer> callable : callables )
+        {
+            charge.addAmmo( "associateWith".equals( context ) ? subject.associateWith( callable ) : callable,
+                NopExceptionHandler.NOOP );
+        }
+
+        return charger.submit( charge, callableExecutor ).getResult();
+    }
+}
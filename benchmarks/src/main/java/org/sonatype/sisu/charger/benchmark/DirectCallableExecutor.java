@@ -0,0 +1,29 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.sonatype.sisu.charger.CallableExecutor;
+
+/**
+ * CallableExecutor that executes the task in the calling thread, before submit returns. Used to measure the overhead
+ * of charge machinery itself, without the noise of thread hand-off.
+ * 
+ * @author cstamas
+ */
+public class DirectCallableExecutor
+    implements CallableExecutor
+{
+    public static final CallableExecutor INSTANCE = new DirectCallableExecutor();
+
+    @Override
+    public <T> Future<T> submit( final Callable<T> task )
+    {
+        final FutureTask<T> future = new FutureTask<T>( task );
+
+        future.run();
+
+        return future;
+    }
+}
@@ -0,0 +1,77 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.sisu.charger.ChargeFuture;
+import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
+import org.sonatype.sisu.charger.internal.FirstArrivedChargeStrategy;
+
+/**
+ * Many unrelated "first arrived" charges completing at the same time, each benchmark thread driving it's own charges.
+ * Since completions of unrelated charges should not contend, throughput should scale with thread count, run it with
+ * increasing thread counts, like {@code java -jar target/benchmarks.jar FirstArrivedContention -t 1} then
+ * {@code -t 2}, {@code -t 4}... up to core count.
+ * 
+ * @author cstamas
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class FirstArrivedContentionBenchmark
+{
+    @Param( { "1", "8", "64" } )
+    public int ammoCount;
+
+    /**
+     * If true, all ammo but the last one bail out, so every completion goes through the strategy.
+     */
+    @Param( { "false", "true" } )
+    public boolean lastArrives;
+
+    private Charger charger;
+
+    private List<Callable<String>> callables;
+
+    @Setup
+    public void setup()
+    {
+        charger = new DefaultCharger();
+
+        callables = new ArrayList<Callable<String>>( ammoCount );
+
+        for ( int i = 0; i < ammoCount; i++ )
+        {
+            final boolean payload = !lastArrives || i == ammoCount - 1;
+
+            callables.add( new ConstantCallable<String>( payload ? "ammo" + i : null ) );
+        }
+    }
+
+    @Benchmark
+    public List<String> firstArrived()
+        throws Exception
+    {
+        final ChargeFuture<String> future =
+            charger.submit( callables, FirstArrivedChargeStrategy.INSTANCE, DirectCallableExecutor.INSTANCE );
+
+        return future.getResult();
+    }
+}
@@ -0,0 +1,36 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.concurrent.Callable;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Callable burning given amount of CPU before delivering a constant payload, used to steer the order in which ammo
+ * completes without sleeping.
+ * 
+ * @author cstamas
+ */
+public class SpinningCallable<E>
+    implements Callable<E>
+{
+    private final long tokens;
+
+    private final E payload;
+
+    public SpinningCallable( final long tokens, final E payload )
+    {
+        this.tokens = tokens;
+        this.payload = payload;
+    }
+
+    @Override
+    public E call()
+    {
+        if ( tokens > 0 )
+        {
+            Blackhole.consumeCPU( tokens );
+        }
+
+        return payload;
+    }
+}
@@ -0,0 +1,109 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.ChargeStrategy;
+import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
+
+/**
+ * {@link DefaultCharger#submit(List, ChargeStrategy, CallableExecutor)} plus getResult, for every strategy across
+ * fan-out sizes and completion orders. With "direct" executor ammo runs inline, in submission order, measuring the
+ * overhead of charge machinery alone; with "pool" it runs on a fixed pool of core count threads, completing in the
+ * given order. Benchmark threads share the charger and the pool, vary their count with {@code -t}, and add
+ * {@code -prof gc} to see allocation rates, like:
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar StrategyBenchmark -t 4 -prof gc
+ * </pre>
+ * 
+ * @author cstamas
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class StrategyBenchmark
+{
+    @Param( { "allArrived", "firstArrived", "firstArrivedInOrder", "quorum" } )
+    public String strategy;
+
+    @Param( { "1", "10", "100", "1000" } )
+    public int ammoCount;
+
+    @Param( { "submission", "reverse", "random" } )
+    public String completionOrder;
+
+    @Param( { "direct", "pool" } )
+    public String executor;
+
+    /**
+     * CPU burnt by ammo per rank in completion order.
+     */
+    @Param( { "10" } )
+    public long tokensPerRank;
+
+    private ExecutorService pool;
+
+    private CallableExecutor callableExecutor;
+
+    private ChargeStrategy chargeStrategy;
+
+    private Charger charger;
+
+    private List<Callable<Integer>> callables;
+
+    @Setup
+    public void setup()
+    {
+        if ( "pool".equals( executor ) )
+        {
+            pool = Charges.pool();
+            callableExecutor = Charges.executor( pool );
+        }
+        else
+        {
+            callableExecutor = DirectCallableExecutor.INSTANCE;
+        }
+
+        chargeStrategy = Charges.strategy( strategy, ammoCount );
+
+        charger = new DefaultCharger();
+
+        callables = Charges.ammo( ammoCount, completionOrder, tokensPerRank );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if ( pool != null )
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public List<Integer> submitAndGetResult()
+        throws Exception
+    {
+        return charger.submit( callables, chargeStrategy, callableExecutor ).getResult();
+    }
+}
@@ -0,0 +1,117 @@
+package org.sonatype.sisu.charger.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.ChargeFuture;
+import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.internal.AllArrivedChargeStrategy;
+import org.sonatype.sisu.charger.internal.BatchingCallableExecutor;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
+
+/**
+ * Cost of submitting (and completing) a charge of trivial ammo, submitted one by one to a fixed thread pool, or in one
+ * batch to {@link BatchingCallableExecutor} with same count of workers. Divide the score by {@code ammoCount} to get
+ * the cost per ammo.
+ * 
+ * @author cstamas
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SubmissionBenchmark
+{
+    @Param( { "pool", "batching" } )
+    public String executor;
+
+    @Param( { "10", "100", "1000", "10000" } )
+    public int ammoCount;
+
+    private ExecutorService pool;
+
+    private BatchingCallableExecutor batchingExecutor;
+
+    private CallableExecutor callableExecutor;
+
+    private Charger charger;
+
+    private List<Callable<Integer>> callables;
+
+    @Setup
+    public void setup()
+    {
+        final int workers = Runtime.getRuntime().availableProcessors();
+
+        if ( "batching".equals( executor ) )
+        {
+            batchingExecutor = new BatchingCallableExecutor( workers );
+            callableExecutor = batchingExecutor;
+        }
+        else
+        {
+            pool = Executors.newFixedThreadPool( workers );
+            callableExecutor = new CallableExecutor()
+            {
+                @Override
+                public <T> Future<T> submit( final Callable<T> task )
+                {
+                    return pool.submit( task );
+                }
+            };
+        }
+
+        charger = new DefaultCharger();
+
+        callables = new ArrayList<Callable<Integer>>( ammoCount );
+
+        for ( int i = 0; i < ammoCount; i++ )
+        {
+            callables.add( new ConstantCallable<Integer>( i ) );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if ( pool != null )
+        {
+            pool.shutdownNow();
+        }
+
+        if ( batchingExecutor != null )
+        {
+            batchingExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public List<Integer> allArrived()
+        throws Exception
+    {
+        final ChargeFuture<Integer> future =
+            charger.submit( callables, AllArrivedChargeStrategy.INSTANCE, callableExecutor );
+
+        return future.getResult();
+    }
+}
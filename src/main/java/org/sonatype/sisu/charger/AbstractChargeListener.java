@@ -0,0 +1,44 @@
+package org.sonatype.sisu.charger;
+
+import org.sonatype.sisu.charger.internal.Charge;
+import org.sonatype.sisu.charger.internal.ChargeWrapper;
+
+/**
+ * ChargeListener ignoring all the events, to be extended by listeners interested in some of them only.
+ * 
+ * @author cstamas
+ */
+public abstract class AbstractChargeListener
+    implements ChargeListener
+{
+    @Override
+    public void chargeSubmitted( final Charge<?> charge )
+    {
+    }
+
+    @Override
+    public void ammoStarted( final Charge<?> charge, final ChargeWrapper<?> ammo )
+    {
+    }
+
+    @Override
+    public void ammoFinished( final Charge<?> charge, final ChargeWrapper<?> ammo, final long executionNanos )
+    {
+    }
+
+    @Override
+    public void ammoFailed( final Charge<?> charge, final ChargeWrapper<?> ammo, final Throwable failure,
+                            final long executionNanos )
+    {
+    }
+
+    @Override
+    public void chargeDecided( final Charge<?> charge )
+    {
+    }
+
+    @Override
+    public void chargeCancelled( final Charge<?> charge )
+    {
+    }
+}
@@ -0,0 +1,132 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Admission control of charges, bounding the count of ammo in flight (submitted to executor and not arrived yet).
+ * Globally, across all the charges sharing this instance, and per charge. A charge is admitted as whole: it gets all
+ * the in flight slots it is entitled to (as many as it's ammo, but at most the per charge limit) before any of it's
+ * ammo is submitted, or it is rejected without submitting anything. The admitted charge launches it's ammo in it's
+ * slots, launching the next one when one arrives, and gives the slots back once there is nothing more to launch.
+ * <p>
+ * If no capacity is available, the charge either waits for it up to the admission timeout, or is rejected right away
+ * if the timeout is zero.
+ * 
+ * @author cstamas
+ */
+public class AdmissionControl
+{
+    private final int maxInFlight;
+
+    private final int maxInFlightPerCharge;
+
+    private final long timeoutNanos;
+
+    private final Semaphore slots;
+
+    /**
+     * Creates admission control rejecting charges right away if no capacity is available.
+     * 
+     * @param maxInFlight the global limit of ammo in flight.
+     * @param maxInFlightPerCharge the limit of ammo in flight of one charge.
+     */
+    public AdmissionControl( final int maxInFlight, final int maxInFlightPerCharge )
+    {
+        this( maxInFlight, maxInFlightPerCharge, 0, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Creates admission control waiting for capacity at most for given time.
+     * 
+     * @param maxInFlight the global limit of ammo in flight.
+     * @param maxInFlightPerCharge the limit of ammo in flight of one charge.
+     * @param timeout the time to wait for capacity, or zero to not wait at all.
+     * @param unit
+     */
+    public AdmissionControl( final int maxInFlight, final int maxInFlightPerCharge, final long timeout,
+                             final TimeUnit unit )
+    {
+        Preconditions.checkArgument( maxInFlight > 0, "Global in flight limit must be positive!" );
+        Preconditions.checkArgument( maxInFlightPerCharge > 0, "Per charge in flight limit must be positive!" );
+        Preconditions.checkArgument( timeout >= 0, "Timeout must not be negative!" );
+
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerCharge = maxInFlightPerCharge;
+        this.timeoutNanos = unit.toNanos( timeout );
+        // fair, so charges needing many slots are not starved by the ones needing few
+        this.slots = new Semaphore( maxInFlight, true );
+    }
+
+    public int getMaxInFlight()
+    {
+        return maxInFlight;
+    }
+
+    public int getMaxInFlightPerCharge()
+    {
+        return maxInFlightPerCharge;
+    }
+
+    /**
+     * Returns the count of slots not held by any charge.
+     * 
+     * @return
+     */
+    public int getAvailableSlots()
+    {
+        return slots.availablePermits();
+    }
+
+    /**
+     * Admits a charge of given count of ammo, waiting for capacity if needed.
+     * 
+     * @param ammoCount
+     * @return the count of slots the charge holds, to be released once the charge does not need them anymore.
+     * @throws RejectedExecutionException if no capacity was available within the admission timeout, or the waiting
+     *             thread was interrupted.
+     */
+    public int admit( final int ammoCount )
+        throws RejectedExecutionException
+    {
+        final int count = Math.min( ammoCount, Math.min( maxInFlight, maxInFlightPerCharge ) );
+
+        if ( count <= 0 )
+        {
+            return 0;
+        }
+
+        try
+        {
+            if ( !slots.tryAcquire( count, timeoutNanos, TimeUnit.NANOSECONDS ) )
+            {
+                throw new RejectedExecutionException( "Charge needing " + count + " slots was not admitted, "
+                    + slots.availablePermits() + " of " + maxInFlight + " slots are available." );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RejectedExecutionException( "Interrupted while waiting for admission of charge!", e );
+        }
+
+        return count;
+    }
+
+    /**
+     * Releases given count of slots held by a charge.
+     * 
+     * @param count
+     */
+    public void release( final int count )
+    {
+        if ( count > 0 )
+        {
+            slots.release( count );
+        }
+    }
+}
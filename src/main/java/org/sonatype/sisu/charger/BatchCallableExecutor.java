@@ -0,0 +1,30 @@
+package org.sonatype.sisu.charger;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * CallableExecutor able to submit many tasks at once, cheaper than submitting them one by one: ie. enqueueing them
+ * in one operation, and waking only as many workers as needed. Charges submit all their ammo in one batch to
+ * executors implementing this interface. To submit a batch to any executor, use
+ * {@link CallableExecutors#submitAll(CallableExecutor, List)}.
+ * 
+ * @author cstamas
+ */
+public interface BatchCallableExecutor
+    extends CallableExecutor
+{
+    /**
+     * Submits value-returning tasks for execution and returns Futures representing the pending results of the tasks,
+     * in same order as tasks. Either all the tasks are submitted, or none of them.
+     * 
+     * @param tasks the tasks to submit
+     * @return Futures representing pending completion of the tasks
+     * @throws RejectedExecutionException if the tasks cannot be scheduled for execution
+     * @throws NullPointerException if any of the tasks is null
+     */
+    <T> List<Future<T>> submitAll( List<? extends Callable<T>> tasks )
+        throws RejectedExecutionException, NullPointerException;
+}
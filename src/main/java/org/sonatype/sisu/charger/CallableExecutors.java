@@ -0,0 +1,94 @@
+package org.sonatype.sisu.charger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Utilities for CallableExecutor.
+ * 
+ * @author cstamas
+ */
+public final class CallableExecutors
+{
+    private CallableExecutors()
+    {
+    }
+
+    /**
+     * Submits the tasks to given executor in one batch if it is a {@link BatchCallableExecutor}, or one by one
+     * otherwise. In latter case, a rejection might come after some tasks were submitted already.
+     * 
+     * @param executor the executor to submit to
+     * @param tasks the tasks to submit
+     * @return Futures representing pending completion of the tasks, in same order as tasks
+     * @throws RejectedExecutionException if the tasks cannot be scheduled for execution
+     * @throws NullPointerException if any of the tasks is null
+     */
+    public static <T> List<Future<T>> submitAll( final CallableExecutor executor,
+                                                 final List<? extends Callable<T>> tasks )
+        throws RejectedExecutionException, NullPointerException
+    {
+        if ( executor instanceof BatchCallableExecutor )
+        {
+            return ( (BatchCallableExecutor) executor ).submitAll( tasks );
+        }
+
+        final ArrayList<Future<T>> result = new ArrayList<Future<T>>( tasks.size() );
+
+        for ( Callable<T> task : tasks )
+        {
+            result.add( executor.submit( task ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a CallableExecutor backed by given Executor. It is an Executor too, so charges hand their ammo over to it
+     * as is, being their own futures, with no future allocated per ammo. Other tasks are wrapped into a
+     * {@link FutureTask} each.
+     * 
+     * @param executor the executor to execute tasks with
+     * @return
+     */
+    public static CallableExecutor fromExecutor( final Executor executor )
+    {
+        return new ExecutorCallableExecutor( executor );
+    }
+
+    // ==
+
+    private static final class ExecutorCallableExecutor
+        implements CallableExecutor, Executor
+    {
+        private final Executor executor;
+
+        private ExecutorCallableExecutor( final Executor executor )
+        {
+            this.executor = Preconditions.checkNotNull( executor );
+        }
+
+        @Override
+        public <T> Future<T> submit( final Callable<T> task )
+        {
+            final FutureTask<T> future = new FutureTask<T>( Preconditions.checkNotNull( task ) );
+
+            executor.execute( future );
+
+            return future;
+        }
+
+        @Override
+        public void execute( final Runnable command )
+        {
+            executor.execute( Preconditions.checkNotNull( command ) );
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.sonatype.sisu.charger;
+
+import org.sonatype.sisu.charger.internal.Charge;
+import org.sonatype.sisu.charger.internal.ChargeWrapper;
+
+/**
+ * Listener of charge lifecycle, meant for tracing and profiling. Components implementing it are picked up by the
+ * charger, and are notified about all the charges it assembles. Ammo events are fired by the workers executing the
+ * ammo, so listeners must be thread safe, cheap, and must not block. Exceptions thrown by listeners are logged and
+ * otherwise ignored.
+ * 
+ * @author cstamas
+ * @see AbstractChargeListener
+ */
+public interface ChargeListener
+{
+    /**
+     * Charge was submitted for execution, it's ammo is about to be launched.
+     * 
+     * @param charge
+     */
+    void chargeSubmitted( Charge<?> charge );
+
+    /**
+     * Ammo of a charge was started by executor.
+     * 
+     * @param charge
+     * @param ammo
+     */
+    void ammoStarted( Charge<?> charge, ChargeWrapper<?> ammo );
+
+    /**
+     * Ammo of a charge finished, delivering a payload or bailing out (returning null).
+     * 
+     * @param charge
+     * @param ammo
+     * @param executionNanos the time ammo was executing.
+     */
+    void ammoFinished( Charge<?> charge, ChargeWrapper<?> ammo, long executionNanos );
+
+    /**
+     * Ammo of a charge failed with an exception (it might be handled by it's ExceptionHandler still).
+     * 
+     * @param charge
+     * @param ammo
+     * @param failure
+     * @param executionNanos the time ammo was executing.
+     */
+    void ammoFailed( Charge<?> charge, ChargeWrapper<?> ammo, Throwable failure, long executionNanos );
+
+    /**
+     * Charge was decided done by it's strategy.
+     * 
+     * @param charge
+     */
+    void chargeDecided( Charge<?> charge );
+
+    /**
+     * Charge was cancelled: by it's user, on deadline, or because executor rejected it's ammo.
+     * 
+     * @param charge
+     */
+    void chargeCancelled( Charge<?> charge );
+}
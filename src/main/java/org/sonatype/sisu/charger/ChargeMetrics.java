@@ -0,0 +1,47 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Metrics SPI of charges. Charges subject of metrics timestamp their ammo when it is enqueued into executor, when it
+ * starts, and when it finishes, and report the timings to the recorder of the charge. Recording happens on the hot
+ * path (in workers, for every ammo), hence recorders must be cheap, and should not allocate.
+ * 
+ * @author cstamas
+ */
+public interface ChargeMetrics
+{
+    /**
+     * Recorder of timings of charges sharing the same name and strategy.
+     */
+    interface Recorder
+    {
+        /**
+         * Records the time an ammo waited in the executor queue, from being submitted to being started.
+         * 
+         * @param nanos
+         */
+        void recordQueueWait( long nanos );
+
+        /**
+         * Records the time an ammo was executing, from being started to being finished.
+         * 
+         * @param nanos
+         */
+        void recordExecution( long nanos );
+
+        /**
+         * Records the time a caller waited for the result of the charge.
+         * 
+         * @param nanos
+         */
+        void recordResultWait( long nanos );
+    }
+
+    /**
+     * Returns the recorder of charges with given name and strategy. Invoked once per charge, when charge is executed.
+     * 
+     * @param chargeName the name of the charge, or null if it is not named.
+     * @param strategy the strategy of the charge.
+     * @return
+     */
+    Recorder getRecorder( String chargeName, ChargeStrategy strategy );
+}
@@ -0,0 +1,291 @@
+package org.sonatype.sisu.charger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Immutable settings a charger applies to every charge it assembles. Charges crufted manually and tossed to the
+ * charger keep their own. Options are given to the charger when it is created, hence a charger shared by many (ie. an
+ * injected singleton) cannot be reconfigured by one of them: create a charger of it's own instead.
+ * 
+ * @author cstamas
+ */
+public final class ChargeOptions
+{
+    /**
+     * The options of charges by default: no loser cancelled, {@link DeadlinePolicy#FAIL}, {@link WaitPolicy#BLOCK},
+     * and none of the optional features.
+     */
+    public static final ChargeOptions DEFAULT = new Builder().build();
+
+    /**
+     * Builder of options, starting from the defaults.
+     */
+    public static final class Builder
+    {
+        private LoserPolicy loserPolicy = LoserPolicy.NONE;
+
+        private DeadlinePolicy deadlinePolicy = DeadlinePolicy.FAIL;
+
+        private WaitPolicy waitPolicy = WaitPolicy.BLOCK;
+
+        private AdmissionControl admissionControl;
+
+        private ChargeMetrics metrics;
+
+        private SingleFlight singleFlight;
+
+        private ResultCache resultCache;
+
+        private RetryPolicy retryPolicy;
+
+        private List<ContextPropagator<?>> contextPropagators = Collections.emptyList();
+
+        private int lazyChargePriority;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Creates a builder starting from given options.
+         * 
+         * @param options
+         */
+        public Builder( final ChargeOptions options )
+        {
+            this.loserPolicy = options.loserPolicy;
+            this.deadlinePolicy = options.deadlinePolicy;
+            this.waitPolicy = options.waitPolicy;
+            this.admissionControl = options.admissionControl;
+            this.metrics = options.metrics;
+            this.singleFlight = options.singleFlight;
+            this.resultCache = options.resultCache;
+            this.retryPolicy = options.retryPolicy;
+            this.contextPropagators = options.contextPropagators;
+            this.lazyChargePriority = options.lazyChargePriority;
+        }
+
+        /**
+         * Sets the loser policy of charges.
+         * 
+         * @param loserPolicy
+         * @return
+         */
+        public Builder setLoserPolicy( final LoserPolicy loserPolicy )
+        {
+            this.loserPolicy = Preconditions.checkNotNull( loserPolicy );
+            return this;
+        }
+
+        /**
+         * Sets the deadline policy of charges.
+         * 
+         * @param deadlinePolicy
+         * @return
+         */
+        public Builder setDeadlinePolicy( final DeadlinePolicy deadlinePolicy )
+        {
+            this.deadlinePolicy = Preconditions.checkNotNull( deadlinePolicy );
+            return this;
+        }
+
+        /**
+         * Sets the wait policy of charges. Use {@link WaitPolicy#HELP} if ammo submits (nested) charges to the same
+         * bounded executor it is executed with.
+         * 
+         * @param waitPolicy
+         * @return
+         */
+        public Builder setWaitPolicy( final WaitPolicy waitPolicy )
+        {
+            this.waitPolicy = Preconditions.checkNotNull( waitPolicy );
+            return this;
+        }
+
+        /**
+         * Sets the admission control of charges, or null if none.
+         * 
+         * @param admissionControl
+         * @return
+         */
+        public Builder setAdmissionControl( final AdmissionControl admissionControl )
+        {
+            this.admissionControl = admissionControl;
+            return this;
+        }
+
+        /**
+         * Sets the metrics charges report their timings to, or null if none.
+         * 
+         * @param metrics
+         * @return
+         */
+        public Builder setMetrics( final ChargeMetrics metrics )
+        {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the single flight shared by charges, coalescing concurrent executions of their {@link KeyedCallable}s
+         * with equal keys, or null to not coalesce them. Coalescing is off by default, as it changes who executes the
+         * callables.
+         * 
+         * @param singleFlight
+         * @return
+         */
+        public Builder setSingleFlight( final SingleFlight singleFlight )
+        {
+            this.singleFlight = singleFlight;
+            return this;
+        }
+
+        /**
+         * Sets the cache shared by charges, memoizing the outcomes of their {@link KeyedCallable}s, or null to not
+         * cache them.
+         * 
+         * @param resultCache
+         * @return
+         */
+        public Builder setResultCache( final ResultCache resultCache )
+        {
+            this.resultCache = resultCache;
+            return this;
+        }
+
+        /**
+         * Sets the retry policy of charges, or null to not retry at all. The policy holds the retry budget, shared by
+         * all the charges it is applied to.
+         * 
+         * @param retryPolicy
+         * @return
+         */
+        public Builder setRetryPolicy( final RetryPolicy retryPolicy )
+        {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the propagators of contexts captured from the submitting thread for every charge (lazy ones too), and
+         * bound around every execution of their ammo.
+         * 
+         * @param contextPropagators
+         * @return
+         */
+        public Builder setContextPropagators( final List<ContextPropagator<?>> contextPropagators )
+        {
+            this.contextPropagators =
+                Collections.unmodifiableList( new ArrayList<ContextPropagator<?>>(
+                    Preconditions.checkNotNull( contextPropagators ) ) );
+            return this;
+        }
+
+        /**
+         * Sets the priority of lazy charges, zero by default. Lazy charges are meant for bulk jobs, set it negative to
+         * keep them from competing with the (interactive) charges of default priority, on executors aware of
+         * priorities.
+         * 
+         * @param lazyChargePriority
+         * @return
+         */
+        public Builder setLazyChargePriority( final int lazyChargePriority )
+        {
+            this.lazyChargePriority = lazyChargePriority;
+            return this;
+        }
+
+        public ChargeOptions build()
+        {
+            return new ChargeOptions( this );
+        }
+    }
+
+    private final LoserPolicy loserPolicy;
+
+    private final DeadlinePolicy deadlinePolicy;
+
+    private final WaitPolicy waitPolicy;
+
+    private final AdmissionControl admissionControl;
+
+    private final ChargeMetrics metrics;
+
+    private final SingleFlight singleFlight;
+
+    private final ResultCache resultCache;
+
+    private final RetryPolicy retryPolicy;
+
+    private final List<ContextPropagator<?>> contextPropagators;
+
+    private final int lazyChargePriority;
+
+    private ChargeOptions( final Builder builder )
+    {
+        this.loserPolicy = builder.loserPolicy;
+        this.deadlinePolicy = builder.deadlinePolicy;
+        this.waitPolicy = builder.waitPolicy;
+        this.admissionControl = builder.admissionControl;
+        this.metrics = builder.metrics;
+        this.singleFlight = builder.singleFlight;
+        this.resultCache = builder.resultCache;
+        this.retryPolicy = builder.retryPolicy;
+        this.contextPropagators = builder.contextPropagators;
+        this.lazyChargePriority = builder.lazyChargePriority;
+    }
+
+    public LoserPolicy getLoserPolicy()
+    {
+        return loserPolicy;
+    }
+
+    public DeadlinePolicy getDeadlinePolicy()
+    {
+        return deadlinePolicy;
+    }
+
+    public WaitPolicy getWaitPolicy()
+    {
+        return waitPolicy;
+    }
+
+    public AdmissionControl getAdmissionControl()
+    {
+        return admissionControl;
+    }
+
+    public ChargeMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public SingleFlight getSingleFlight()
+    {
+        return singleFlight;
+    }
+
+    public ResultCache getResultCache()
+    {
+        return resultCache;
+    }
+
+    public RetryPolicy getRetryPolicy()
+    {
+        return retryPolicy;
+    }
+
+    public List<ContextPropagator<?>> getContextPropagators()
+    {
+        return contextPropagators;
+    }
+
+    public int getLazyChargePriority()
+    {
+        return lazyChargePriority;
+    }
+}
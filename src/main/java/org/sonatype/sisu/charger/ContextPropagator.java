@@ -0,0 +1,34 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Propagator of a thread bound context (ie. security subject, logging MDC) from the thread submitting a charge to the
+ * threads executing it's ammo. The context is captured once per charge, and is bound around every execution of ammo,
+ * with no wrapper allocated per ammo. Implementations are shared among charges, so they have to be thread safe.
+ * 
+ * @author cstamas
+ * @param <C> the type of captured context.
+ */
+public interface ContextPropagator<C>
+{
+    /**
+     * Captures the context bound to the calling thread.
+     * 
+     * @return the context, or null if there is none.
+     */
+    C capture();
+
+    /**
+     * Binds the given captured context to the calling thread, replacing the one bound to it, if any.
+     * 
+     * @param context the context, or null if there was none captured.
+     * @return the state to restore once done, whatever this propagator needs to do that.
+     */
+    Object bind( C context );
+
+    /**
+     * Restores the state of the calling thread, as it was before the context was bound.
+     * 
+     * @param previous the state returned by {@link #bind(Object)}.
+     */
+    void restore( Object previous );
+}
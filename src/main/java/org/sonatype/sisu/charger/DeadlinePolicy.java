@@ -0,0 +1,22 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Policy what to do when a charge is not done within the time limit given to
+ * {@link ExtendedChargeFuture#getResult(long, java.util.concurrent.TimeUnit)}. In both cases, the ammo not finished by then
+ * is cancelled.
+ * 
+ * @author cstamas
+ */
+public enum DeadlinePolicy
+{
+    /**
+     * Fail with {@link java.util.concurrent.TimeoutException}. This is the default.
+     */
+    FAIL,
+
+    /**
+     * Return whatever arrived so far, as the strategy sees it (ie. the payloads finished so far for "all arrived"
+     * strategy).
+     */
+    PARTIAL_RESULTS;
+}
@@ -4,6 +4,11 @@ package org.sonatype.sisu.charger;
  * Exception handler interface. In case callable throws any exception, and implementation of this interface is provided,
  * it will be asked to handle the exception. Since this is an interface, it is very nice to make your Callable
  * implementation to implement this interface too, and have the actual work, but also it's error handling in one place.
+ * <p>
+ * Threading: the handler is not necessarily invoked on the thread collecting the charge results. Strategies deciding on
+ * arrival (like "first arrived" or "quorum") ask it on the worker thread that just ran the failed Callable, to learn
+ * whether that failure decides the charge, while strategies collecting all results ask it on the thread calling
+ * {@code getResult()}. Hence, implementations must be thread safe, should be fast and must not block.
  * 
  * @author cstamas
  */
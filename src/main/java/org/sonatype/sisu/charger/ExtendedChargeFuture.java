@@ -0,0 +1,68 @@
+package org.sonatype.sisu.charger;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handle to a Charge's future, being able to notify listeners, stream the payloads and wait for a bounded time. The
+ * Charges are such futures, and so are the ones {@link org.sonatype.sisu.charger.internal.DefaultCharger} returns,
+ * while {@link ChargeFuture} itself is left as is, not to break it's implementors.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public interface ExtendedChargeFuture<E>
+    extends ChargeFuture<E>
+{
+    /**
+     * Returns true if charge was cancelled (or timed out by {@link #getResult(long, TimeUnit)}) before it's strategy
+     * decided it is done. A cancelled charge is done too.
+     * 
+     * @return
+     */
+    boolean isCancelled();
+
+    /**
+     * Registers a listener to be run on the given executor once the Charge is done according to it's strategy (or is
+     * cancelled, or timed out). If Charge is already done, the listener is executed immediately. Listeners are not
+     * allowed to block, but may safely invoke {@link #getResult()}, since it will not block once Charge is done. To
+     * have the listener run by the worker that completed the Charge, use
+     * {@link com.google.common.util.concurrent.MoreExecutors#sameThreadExecutor()}.
+     * 
+     * @param listener
+     * @param executor
+     * @see com.google.common.util.concurrent.ListenableFuture#addListener(Runnable, Executor)
+     */
+    void addListener( Runnable listener, Executor executor );
+
+    /**
+     * Returns a new stream of the charge' payloads, delivering them as soon as they arrive, instead of waiting for the
+     * Charge to be done. Every invocation returns a new stream starting from first arrived payload.
+     * 
+     * @return
+     */
+    ResultStream<E> getResultStream();
+
+    /**
+     * Returns the count of ammo cancelled by the Charge itself, by it's {@link LoserPolicy} or on deadline.
+     * 
+     * @return
+     */
+    int getReclaimedCount();
+
+    /**
+     * Returns the charge' results. This method BLOCKS as long Charge is not done, but at most for the given time. If
+     * charge is not done by then, the not finished ammo is cancelled, and depending on the {@link DeadlinePolicy} of
+     * the Charge, a {@link TimeoutException} is thrown or the results arrived so far are returned.
+     * 
+     * @param timeout
+     * @param unit
+     * @return
+     * @throws TimeoutException if charge was not done in time, and policy is {@link DeadlinePolicy#FAIL}.
+     * @throws Exception
+     */
+    List<E> getResult( long timeout, TimeUnit unit )
+        throws Exception;
+}
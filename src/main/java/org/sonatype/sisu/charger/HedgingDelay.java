@@ -0,0 +1,25 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Delay of a hedged charge: how long to wait for a result of launched Callable(s), before launching a backup one.
+ * Implementations are shared among charges, so they have to be thread safe.
+ * 
+ * @author cstamas
+ */
+public interface HedgingDelay
+{
+    /**
+     * Returns the delay to wait after launching a Callable, before the next one is launched, in nanoseconds.
+     * 
+     * @return
+     */
+    long getDelayNanos();
+
+    /**
+     * Invoked with the latency of every Callable that delivered a payload, measured from it's launch, in nanoseconds.
+     * Implementations might use it to adapt the delay.
+     * 
+     * @param latencyNanos
+     */
+    void recordLatency( long latencyNanos );
+}
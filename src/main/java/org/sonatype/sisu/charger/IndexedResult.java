@@ -0,0 +1,36 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * A payload delivered by a Callable of a Charge, with the index of the Callable (it's position in the Charge).
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public class IndexedResult<E>
+{
+    private final int index;
+
+    private final E result;
+
+    public IndexedResult( final int index, final E result )
+    {
+        this.index = index;
+        this.result = result;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public E getResult()
+    {
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "IndexedResult(" + index + ": " + result + ")";
+    }
+}
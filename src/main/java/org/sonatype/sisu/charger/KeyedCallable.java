@@ -0,0 +1,23 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Callable with an identity: concurrently executing Callables having equal keys are expected to deliver the same
+ * result, hence charges might execute only one of them, and share it's result (or exception) with the others. The key
+ * must identify the result completely, including anything the result depends on besides the key (ie. the security
+ * context it is executed in).
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public interface KeyedCallable<E>
+    extends Callable<E>
+{
+    /**
+     * Returns the key of this Callable, must implement {@link Object#equals(Object)} and {@link Object#hashCode()}.
+     * 
+     * @return
+     */
+    Object getKey();
+}
@@ -0,0 +1,58 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Handle to a lazy Charge's future, a charge pulling it's Callables from an Iterator as it goes, keeping at most a
+ * window of them in memory at once. The payloads are delivered by it's {@link #getResultStream()}, and they occupy
+ * their place in the window until they are taken from the stream (or {@link #drain()}ed).
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public interface LazyChargeFuture<E>
+{
+    /**
+     * Cancels the Charge: no more Callables are pulled, and the ones in flight are cancelled.
+     * 
+     * @param mayInterruptIfRunning
+     * @return true if charge was cancelled, false if it was done or cancelled already.
+     */
+    boolean cancel( boolean mayInterruptIfRunning );
+
+    /**
+     * Returns true if all the Callables were pulled from Iterator and did arrive, or Charge failed or was cancelled.
+     * 
+     * @return
+     */
+    boolean isDone();
+
+    /**
+     * Returns the count of Callables pulled from Iterator and launched so far.
+     * 
+     * @return
+     */
+    int getLaunchedCount();
+
+    /**
+     * Returns the count of Callables arrived so far.
+     * 
+     * @return
+     */
+    int getCompletedCount();
+
+    /**
+     * Returns THE stream of the charge' payloads, in order as they arrive. There is one stream only, every invocation
+     * returns the same instance, hence payloads are taken from it once.
+     * 
+     * @return
+     */
+    ResultStream<E> getResultStream();
+
+    /**
+     * Blocks until Charge is done, discarding all the payloads not taken from result stream yet. This method BLOCKS
+     * as long Charge is not done.
+     * 
+     * @throws Exception the unhandled exception of the first Callable failed with it, if any.
+     */
+    void drain()
+        throws Exception;
+}
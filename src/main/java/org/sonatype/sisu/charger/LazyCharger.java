@@ -0,0 +1,37 @@
+package org.sonatype.sisu.charger;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Component to submit lazy charges for execution, charges pulling their Callables from an Iterator as they go. Kept
+ * apart from {@link Charger}, not to break it's implementors.
+ * 
+ * @author cstamas
+ */
+public interface LazyCharger
+{
+    /**
+     * Handy method to execute a lazy charge of work, sharing one instance (!) of ExceptionHandler, pulling Callables
+     * from passed in Iterator as it goes, and keeping at most a window of them (and their payloads) in memory at once.
+     * Meant for bulk jobs of huge count of Callables.
+     * <p>
+     * Lazy charges are executed by an engine of their own, supporting the priority and the contexts of charges only.
+     * The settings of charges they do not support (admission control, metrics, single flight, result cache and retry
+     * policy) are rejected, and the listeners of charges are not notified about them.
+     * 
+     * @param callables
+     * @param exceptionHandler
+     * @param window
+     * @param executorServiceProvider
+     * @return
+     * @throws RejectedExecutionException if the task cannot be scheduled for execution
+     * @throws NullPointerException if any of the parameters is null
+     * @throws IllegalStateException if the charger applies settings to charges that lazy charges do not support.
+     */
+    <E> LazyChargeFuture<E> submit( Iterator<? extends Callable<? extends E>> callables,
+                                    ExceptionHandler exceptionHandler, int window,
+                                    CallableExecutor executorServiceProvider )
+        throws RejectedExecutionException, NullPointerException, IllegalStateException;
+}
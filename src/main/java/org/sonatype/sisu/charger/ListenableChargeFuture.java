@@ -0,0 +1,106 @@
+package org.sonatype.sisu.charger;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractListenableFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Adapter of an {@link ExtendedChargeFuture} to Guava {@link ListenableFuture}, to be able to compose charges
+ * asynchronously (ie. using
+ * {@link com.google.common.util.concurrent.Futures#chain(ListenableFuture, com.google.common.base.Function)} or
+ * {@link com.google.common.util.concurrent.Futures#transform(ListenableFuture, com.google.common.base.Function)}).
+ * The adapter is completed by the worker completing the Charge, exactly when it's strategy decides it is done, no
+ * helper thread blocks on {@link ChargeFuture#getResult()}. Cancelling the adapter cancels the Charge, and the adapter
+ * of a Charge cancelled (or timed out) directly is cancelled too.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public class ListenableChargeFuture<E>
+    extends AbstractListenableFuture<List<E>>
+{
+    private final ExtendedChargeFuture<E> chargeFuture;
+
+    private ListenableChargeFuture( final ExtendedChargeFuture<E> chargeFuture )
+    {
+        this.chargeFuture = Preconditions.checkNotNull( chargeFuture );
+    }
+
+    /**
+     * Adapts the given ExtendedChargeFuture.
+     * 
+     * @param chargeFuture
+     * @return
+     */
+    public static <E> ListenableChargeFuture<E> adapt( final ExtendedChargeFuture<E> chargeFuture )
+    {
+        final ListenableChargeFuture<E> result = new ListenableChargeFuture<E>( chargeFuture );
+
+        chargeFuture.addListener( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                result.complete();
+            }
+        }, MoreExecutors.sameThreadExecutor() );
+
+        return result;
+    }
+
+    /**
+     * Returns the adapted ExtendedChargeFuture.
+     * 
+     * @return
+     */
+    public ExtendedChargeFuture<E> getChargeFuture()
+    {
+        return chargeFuture;
+    }
+
+    @Override
+    public boolean cancel( final boolean mayInterruptIfRunning )
+    {
+        // the public method of Guava's AbstractFuture does not cancel at all
+        if ( cancel() )
+        {
+            chargeFuture.cancel( mayInterruptIfRunning );
+
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    // ==
+
+    protected void complete()
+    {
+        if ( chargeFuture.isCancelled() )
+        {
+            // not decided, the results are partial at best
+            cancel();
+
+            return;
+        }
+
+        try
+        {
+            // charge is done, this does not block
+            set( chargeFuture.getResult() );
+        }
+        catch ( Exception e )
+        {
+            setException( e );
+        }
+        catch ( Error e )
+        {
+            setException( e );
+        }
+    }
+}
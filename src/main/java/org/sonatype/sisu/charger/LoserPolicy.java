@@ -0,0 +1,27 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Policy what to do with the "losers" of a charge: the ammo that did not finish yet when the strategy decided the
+ * charge is done (ie. the "first arrived" strategies found their winner).
+ * 
+ * @author cstamas
+ */
+public enum LoserPolicy
+{
+    /**
+     * Let the losers run: queued ones will bail out once they start, running ones finish in peace. This is the
+     * default.
+     */
+    NONE,
+
+    /**
+     * Cancel the losers that did not start yet, so they are removed from executor (if it supports that), while running
+     * ones finish in peace.
+     */
+    CANCEL_QUEUED,
+
+    /**
+     * Cancel the losers that did not start yet, and interrupt the running ones.
+     */
+    CANCEL_RUNNING;
+}
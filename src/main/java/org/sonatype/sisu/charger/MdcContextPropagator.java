@@ -0,0 +1,54 @@
+package org.sonatype.sisu.charger;
+
+import java.util.Map;
+
+import org.slf4j.MDC;
+
+/**
+ * ContextPropagator of the SLF4J MDC, so the log lines of ammo carry the diagnostic context of the thread that
+ * submitted the charge. The context is copied once per charge, but the one bound to the executing thread is copied on
+ * every execution too, to be restored after it (the MDC offers no other way).
+ * 
+ * @author cstamas
+ */
+public class MdcContextPropagator
+    implements ContextPropagator<Map<?, ?>>
+{
+    public static final MdcContextPropagator INSTANCE = new MdcContextPropagator();
+
+    @Override
+    public Map<?, ?> capture()
+    {
+        return MDC.getCopyOfContextMap();
+    }
+
+    @Override
+    public Object bind( final Map<?, ?> context )
+    {
+        final Map<?, ?> previous = MDC.getCopyOfContextMap();
+
+        set( context );
+
+        return previous;
+    }
+
+    @Override
+    public void restore( final Object previous )
+    {
+        set( (Map<?, ?>) previous );
+    }
+
+    // ==
+
+    private void set( final Map<?, ?> context )
+    {
+        if ( context == null || context.isEmpty() )
+        {
+            MDC.clear();
+        }
+        else
+        {
+            MDC.setContextMap( context );
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Callable having a priority. Executors aware of priorities run the Callables of higher priority first. The ammo of
+ * charges carry the priority of their charge.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public interface PrioritizedCallable<E>
+    extends Callable<E>
+{
+    /**
+     * Returns the priority of this Callable, the higher the more urgent. Zero is the default priority.
+     * 
+     * @return
+     */
+    int getPriority();
+}
@@ -0,0 +1,353 @@
+package org.sonatype.sisu.charger;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Cache of the outcomes of {@link KeyedCallable}s, keyed by their keys. Payloads are kept for the positive TTL, and
+ * exceptions handled by the ExceptionHandler of the ammo and null payloads (negative outcomes) for the negative TTL,
+ * or not at all if it is zero. Unhandled exceptions and bail outs by interruption are never cached. The count of
+ * entries is bounded, the least recently used entries being evicted in batches once it is exceeded.
+ * <p>
+ * Lookups take no lock: recency is approximate, entries looked up after the same store are equally recent, and the
+ * bound might be exceeded by the stores made while an eviction is going on.
+ * <p>
+ * Keyed ammo having it's outcome cached is not submitted to the executor at all, but delivers the cached outcome right
+ * in the thread executing the charge.
+ * 
+ * @author cstamas
+ */
+public class ResultCache
+{
+    /**
+     * Cached outcome of a keyed callable.
+     */
+    public static final class Entry
+    {
+        private final Object payload;
+
+        private final Exception exception;
+
+        private final long expiresAt;
+
+        private volatile long usedAt;
+
+        private Entry( final Object payload, final Exception exception, final long expiresAt, final long usedAt )
+        {
+            this.payload = payload;
+            this.exception = exception;
+            this.expiresAt = expiresAt;
+            this.usedAt = usedAt;
+        }
+
+        /**
+         * Returns the cached payload, or throws the cached exception.
+         * 
+         * @return
+         * @throws Exception
+         */
+        public Object getPayload()
+            throws Exception
+        {
+            if ( exception != null )
+            {
+                throw exception;
+            }
+
+            return payload;
+        }
+
+        /**
+         * Returns true if this is a negative outcome: a handled exception or a null payload.
+         * 
+         * @return
+         */
+        public boolean isNegative()
+        {
+            return payload == null;
+        }
+
+        boolean isExpired( final long now )
+        {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final long negativeTtlNanos;
+
+    private final int evictTo;
+
+    private final ConcurrentHashMap<Object, Entry> entries;
+
+    private final AtomicInteger count;
+
+    private final AtomicLong clock;
+
+    private final AtomicBoolean evicting;
+
+    private final AtomicLong hits;
+
+    private final AtomicLong misses;
+
+    /**
+     * Creates a cache not caching negative outcomes.
+     * 
+     * @param maxSize the count of entries kept at most.
+     * @param ttl the time payloads are kept for.
+     * @param unit
+     */
+    public ResultCache( final int maxSize, final long ttl, final TimeUnit unit )
+    {
+        this( maxSize, ttl, 0, unit );
+    }
+
+    /**
+     * Creates a cache.
+     * 
+     * @param maxSize the count of entries kept at most.
+     * @param ttl the time payloads are kept for.
+     * @param negativeTtl the time handled exceptions are kept for, or zero to not cache them.
+     * @param unit
+     */
+    public ResultCache( final int maxSize, final long ttl, final long negativeTtl, final TimeUnit unit )
+    {
+        Preconditions.checkArgument( maxSize > 0, "Size must be positive!" );
+        Preconditions.checkArgument( ttl > 0, "TTL must be positive!" );
+        Preconditions.checkArgument( negativeTtl >= 0, "Negative TTL must not be negative!" );
+
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos( ttl );
+        this.negativeTtlNanos = unit.toNanos( negativeTtl );
+        // evicting a bit more than needed, so the scans are amortized over the stores
+        this.evictTo = maxSize - maxSize / 16;
+        this.entries = new ConcurrentHashMap<Object, Entry>();
+        this.count = new AtomicInteger( 0 );
+        this.clock = new AtomicLong( 0 );
+        this.evicting = new AtomicBoolean( false );
+        this.hits = new AtomicLong( 0 );
+        this.misses = new AtomicLong( 0 );
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns the count of entries, including the expired ones not evicted yet.
+     * 
+     * @return
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the outcome cached for given key, or null if there is none, or it is expired.
+     * 
+     * @param key
+     * @return
+     */
+    public Entry get( final Object key )
+    {
+        Entry entry = entries.get( key );
+
+        if ( entry != null )
+        {
+            if ( entry.isExpired( System.nanoTime() ) )
+            {
+                remove( key, entry );
+
+                entry = null;
+            }
+            else
+            {
+                // more recent than anything stored before, the clock itself is moved by stores only
+                entry.usedAt = clock.get() + 1;
+            }
+        }
+
+        ( entry != null ? hits : misses ).incrementAndGet();
+
+        return entry;
+    }
+
+    /**
+     * Caches the payload delivered for given key. A null payload is a negative outcome, cached only if negative
+     * outcomes are cached at all.
+     * 
+     * @param key
+     * @param payload
+     */
+    public void put( final Object key, final Object payload )
+    {
+        if ( payload != null )
+        {
+            store( key, payload, null, ttlNanos );
+        }
+        else if ( negativeTtlNanos > 0 )
+        {
+            store( key, null, null, negativeTtlNanos );
+        }
+    }
+
+    /**
+     * Caches the handled exception thrown for given key, if negative outcomes are cached at all.
+     * 
+     * @param key
+     * @param exception
+     */
+    public void putNegative( final Object key, final Exception exception )
+    {
+        if ( negativeTtlNanos > 0 )
+        {
+            store( key, null, Preconditions.checkNotNull( exception ), negativeTtlNanos );
+        }
+    }
+
+    /**
+     * Removes the outcome cached for given key, if any.
+     * 
+     * @param key
+     */
+    public void invalidate( final Object key )
+    {
+        if ( entries.remove( key ) != null )
+        {
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all the cached outcomes.
+     */
+    public void invalidateAll()
+    {
+        for ( Object key : entries.keySet() )
+        {
+            invalidate( key );
+        }
+    }
+
+    /**
+     * Removes the expired outcomes. They are removed once looked up anyway, this is to reclaim the memory of the ones
+     * not looked up anymore, before they would get evicted.
+     */
+    public void purgeExpired()
+    {
+        final long now = System.nanoTime();
+
+        for ( Map.Entry<Object, Entry> entry : entries.entrySet() )
+        {
+            if ( entry.getValue().isExpired( now ) )
+            {
+                remove( entry.getKey(), entry.getValue() );
+            }
+        }
+    }
+
+    // ==
+
+    private void store( final Object key, final Object payload, final Exception exception, final long ttl )
+    {
+        final long now = System.nanoTime();
+
+        final Entry entry = new Entry( payload, exception, now + ttl, clock.addAndGet( 2 ) );
+
+        if ( entries.put( Preconditions.checkNotNull( key ), entry ) == null
+            && count.incrementAndGet() > maxSize )
+        {
+            evict();
+        }
+    }
+
+    private void remove( final Object key, final Entry entry )
+    {
+        if ( entries.remove( key, entry ) )
+        {
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Evicts the expired entries, and the least recently used ones, until there is room for some more stores. Only one
+     * thread evicts at once, the others just go on meanwhile.
+     */
+    private void evict()
+    {
+        if ( !evicting.compareAndSet( false, true ) )
+        {
+            return;
+        }
+
+        try
+        {
+            purgeExpired();
+
+            int excess = count.get() - evictTo;
+
+            if ( excess <= 0 )
+            {
+                return;
+            }
+
+            // stamps are copied, as they change while we look at them
+            long[] stamps = new long[entries.size()];
+
+            int size = 0;
+
+            for ( Iterator<Entry> i = entries.values().iterator(); i.hasNext() && size < stamps.length; )
+            {
+                stamps[size++] = i.next().usedAt;
+            }
+
+            if ( size == 0 )
+            {
+                return;
+            }
+
+            Arrays.sort( stamps, 0, size );
+
+            final long threshold = stamps[Math.min( excess, size ) - 1];
+
+            for ( Iterator<Map.Entry<Object, Entry>> i = entries.entrySet().iterator(); i.hasNext() && excess > 0; )
+            {
+                final Map.Entry<Object, Entry> entry = i.next();
+
+                if ( entry.getValue().usedAt <= threshold )
+                {
+                    remove( entry.getKey(), entry.getValue() );
+
+                    excess--;
+                }
+            }
+        }
+        finally
+        {
+            evicting.set( false );
+        }
+    }
+}
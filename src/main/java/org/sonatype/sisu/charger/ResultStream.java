@@ -0,0 +1,37 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Streaming view of a Charge's payloads, in order as they arrive, as opposed to {@link ChargeFuture#getResult()} that
+ * delivers them at once, when Charge is done. The stream goes over all the Callables of the Charge, regardless of it's
+ * strategy: ammo bailing out or failing with exceptions handled by their ExceptionHandler are skipped. Instances are
+ * not thread safe, and are meant to be consumed by one thread.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public interface ResultStream<E>
+{
+    /**
+     * Returns the next payload as soon as it arrives. This method BLOCKS until then.
+     * 
+     * @return the next payload, or null if there will be no more payloads.
+     * @throws Exception the unhandled exception of the ammo, if one failed with it.
+     */
+    IndexedResult<E> next()
+        throws Exception;
+
+    /**
+     * Returns the next payload as soon as it arrives. This method BLOCKS until then, but at most for given time.
+     * 
+     * @param timeout
+     * @param unit
+     * @return the next payload, or null if there will be no more payloads.
+     * @throws TimeoutException if no payload arrived in time.
+     * @throws Exception the unhandled exception of the ammo, if one failed with it.
+     */
+    IndexedResult<E> next( long timeout, TimeUnit unit )
+        throws Exception;
+}
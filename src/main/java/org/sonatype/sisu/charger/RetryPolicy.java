@@ -0,0 +1,170 @@
+package org.sonatype.sisu.charger;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Retry policy of charges, applied to ammo failing with exceptions their {@link RetryingExceptionHandler} deems worth
+ * a retry. The retries are delayed by exponential backoff with "full jitter": the n-th retry waits a random time up to
+ * the base delay times 2^(n-1), but at most the maximum delay, so retries of many ammo failing at once spread out.
+ * <p>
+ * Retries are subject of a retry budget shared by all the charges using this instance: every first attempt of ammo
+ * deposits the budget ratio of a retry, every retry withdraws a whole one, and a retry not covered is not made. The
+ * budget is capped at the reserve, that is also the budget to start with, so retries are at most the budget ratio of
+ * the traffic plus the reserve, and a broken upstream cannot trigger a storm of retries.
+ * <p>
+ * The budget is kept lock free, and jitter is drawn from a random generator per thread, so the policy shared by all
+ * the charges is not a point of contention.
+ * 
+ * @author cstamas
+ */
+public class RetryPolicy
+{
+    private static final long RETRY_COST = 1000;
+
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>()
+    {
+        @Override
+        protected Random initialValue()
+        {
+            return new Random();
+        }
+    };
+
+    private final long baseDelayNanos;
+
+    private final long maxDelayNanos;
+
+    private final double budgetRatio;
+
+    private final int budgetReserve;
+
+    private final long deposit;
+
+    private final long maxBalance;
+
+    private final AtomicLong balance;
+
+    /**
+     * Creates a retry policy.
+     * 
+     * @param baseDelay the delay of the first retry at most.
+     * @param maxDelay the delay of any retry at most.
+     * @param unit
+     * @param budgetRatio the ratio of retries to first attempts allowed (ie. 0.1 for 10%).
+     * @param budgetReserve the count of retries allowed regardless of the ratio, the ones in a row at most.
+     */
+    public RetryPolicy( final long baseDelay, final long maxDelay, final TimeUnit unit, final double budgetRatio,
+                        final int budgetReserve )
+    {
+        Preconditions.checkArgument( baseDelay >= 0 && baseDelay <= maxDelay,
+            "Base delay must not be negative, nor greater than maximal delay!" );
+        Preconditions.checkArgument( budgetRatio >= 0, "Budget ratio must not be negative!" );
+        Preconditions.checkArgument( budgetReserve >= 0, "Budget reserve must not be negative!" );
+
+        this.baseDelayNanos = unit.toNanos( baseDelay );
+        this.maxDelayNanos = unit.toNanos( maxDelay );
+        this.budgetRatio = budgetRatio;
+        this.budgetReserve = budgetReserve;
+        this.deposit = Math.round( budgetRatio * RETRY_COST );
+        this.maxBalance = Math.max( budgetReserve * RETRY_COST, RETRY_COST );
+        this.balance = new AtomicLong( budgetReserve * RETRY_COST );
+    }
+
+    public double getBudgetRatio()
+    {
+        return budgetRatio;
+    }
+
+    public int getBudgetReserve()
+    {
+        return budgetReserve;
+    }
+
+    /**
+     * Returns the count of retries the budget currently covers.
+     * 
+     * @return
+     */
+    public int getBudget()
+    {
+        return (int) ( balance.get() / RETRY_COST );
+    }
+
+    /**
+     * Records a first attempt of ammo, depositing to the budget.
+     */
+    public void recordAttempt()
+    {
+        while ( true )
+        {
+            final long current = balance.get();
+
+            // a full budget is not written to at all
+            if ( current >= maxBalance || balance.compareAndSet( current, Math.min( maxBalance, current + deposit ) ) )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Withdraws a retry from the budget, if it covers one.
+     * 
+     * @return true if retry was withdrawn, false if budget is exhausted.
+     */
+    public boolean tryRetry()
+    {
+        while ( true )
+        {
+            final long current = balance.get();
+
+            if ( current < RETRY_COST )
+            {
+                return false;
+            }
+
+            if ( balance.compareAndSet( current, current - RETRY_COST ) )
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a retry withdrawn by {@link #tryRetry()}, that was not made after all.
+     */
+    public void refundRetry()
+    {
+        while ( true )
+        {
+            final long current = balance.get();
+
+            if ( balance.compareAndSet( current, Math.min( maxBalance, current + RETRY_COST ) ) )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the delay of the given retry.
+     * 
+     * @param retry the count of the retry, 1 for the first one.
+     * @return the delay in nanoseconds.
+     */
+    public long getDelayNanos( final int retry )
+    {
+        long ceiling = baseDelayNanos;
+
+        for ( int i = 1; i < retry && ceiling < maxDelayNanos; i++ )
+        {
+            ceiling <<= 1;
+        }
+
+        return (long) ( Math.min( ceiling, maxDelayNanos ) * RANDOM.get().nextDouble() );
+    }
+}
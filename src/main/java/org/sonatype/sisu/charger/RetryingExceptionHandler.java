@@ -0,0 +1,22 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Exception handler deciding about retries too. If the Callable failed with an exception it deems transient, the
+ * Callable is executed again after a backoff, instead of having the exception handled, as long as the retry policy of
+ * charge (and it's retry budget) permits that. Otherwise, the exception is handled as usual.
+ * 
+ * @author cstamas
+ */
+public interface RetryingExceptionHandler
+    extends ExceptionHandler
+{
+    /**
+     * This method is invoked when the Callable failed with an exception, before it is handled. If this method returns
+     * true, the Callable is retried (if charge permits), and the exception is dropped.
+     * 
+     * @param ex
+     * @param attempt the count of attempts made so far, 1 for the first failure.
+     * @return
+     */
+    boolean retry( Exception ex, int attempt );
+}
@@ -0,0 +1,38 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.Callable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * KeyedCallable giving a key to any Callable.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public class SimpleKeyedCallable<E>
+    implements KeyedCallable<E>
+{
+    private final Object key;
+
+    private final Callable<? extends E> callable;
+
+    public SimpleKeyedCallable( final Object key, final Callable<? extends E> callable )
+    {
+        this.key = Preconditions.checkNotNull( key );
+        this.callable = Preconditions.checkNotNull( callable );
+    }
+
+    @Override
+    public Object getKey()
+    {
+        return key;
+    }
+
+    @Override
+    public E call()
+        throws Exception
+    {
+        return callable.call();
+    }
+}
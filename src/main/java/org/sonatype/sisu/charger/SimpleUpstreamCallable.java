@@ -0,0 +1,38 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.Callable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * UpstreamCallable tagging any Callable with an upstream name.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public class SimpleUpstreamCallable<E>
+    implements UpstreamCallable<E>
+{
+    private final String upstream;
+
+    private final Callable<? extends E> callable;
+
+    public SimpleUpstreamCallable( final String upstream, final Callable<? extends E> callable )
+    {
+        this.upstream = Preconditions.checkNotNull( upstream );
+        this.callable = Preconditions.checkNotNull( callable );
+    }
+
+    @Override
+    public String getUpstream()
+    {
+        return upstream;
+    }
+
+    @Override
+    public E call()
+        throws Exception
+    {
+        return callable.call();
+    }
+}
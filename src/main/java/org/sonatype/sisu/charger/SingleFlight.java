@@ -0,0 +1,127 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Coalesces concurrent executions of {@link KeyedCallable}s with equal keys: the first one (the leader) is executed,
+ * and the ones arriving while it executes (the followers) wait for it, and share it's outcome. Once the leader is
+ * done, the next one with same key is executed again, nothing is cached.
+ * <p>
+ * If the leader is interrupted (ie. cancelled as loser of it's own charge), the followers not interrupted themselves
+ * do not bail out with it, but retry, one of them becoming the new leader.
+ * 
+ * @author cstamas
+ */
+public class SingleFlight
+{
+    private final ConcurrentMap<Object, FutureTask<?>> flights;
+
+    private final AtomicLong coalesced;
+
+    public SingleFlight()
+    {
+        this.flights = new ConcurrentHashMap<Object, FutureTask<?>>();
+        this.coalesced = new AtomicLong( 0 );
+    }
+
+    /**
+     * Returns the count of executions that were spared, by following a leader.
+     * 
+     * @return
+     */
+    public long getCoalescedCount()
+    {
+        return coalesced.get();
+    }
+
+    /**
+     * Executes the callable, or waits for the execution in flight of a callable with equal key.
+     * 
+     * @param callable
+     * @return
+     * @throws Exception
+     */
+    @SuppressWarnings( "unchecked" )
+    public <E> E call( final KeyedCallable<? extends E> callable )
+        throws Exception
+    {
+        final Object key = Preconditions.checkNotNull( callable.getKey() );
+
+        while ( true )
+        {
+            final FutureTask<E> flight = new FutureTask<E>( (Callable<E>) callable );
+
+            final FutureTask<E> leader = (FutureTask<E>) flights.putIfAbsent( key, flight );
+
+            if ( leader == null )
+            {
+                try
+                {
+                    flight.run();
+                }
+                finally
+                {
+                    flights.remove( key, flight );
+                }
+
+                return getOutcome( flight );
+            }
+
+            coalesced.incrementAndGet();
+
+            try
+            {
+                // an InterruptedException thrown by get() is our own, and goes to caller
+                return leader.get();
+            }
+            catch ( ExecutionException e )
+            {
+                if ( !( e.getCause() instanceof InterruptedException ) )
+                {
+                    throw unwrap( e );
+                }
+
+                // leader was interrupted, not us
+                coalesced.decrementAndGet();
+            }
+        }
+    }
+
+    // ==
+
+    private static <E> E getOutcome( final FutureTask<E> flight )
+        throws Exception
+    {
+        try
+        {
+            return flight.get();
+        }
+        catch ( ExecutionException e )
+        {
+            throw unwrap( e );
+        }
+    }
+
+    private static Exception unwrap( final ExecutionException e )
+    {
+        final Throwable cause = e.getCause();
+
+        if ( cause instanceof Exception )
+        {
+            return (Exception) cause;
+        }
+        else if ( cause instanceof Error )
+        {
+            throw (Error) cause;
+        }
+
+        return e;
+    }
+}
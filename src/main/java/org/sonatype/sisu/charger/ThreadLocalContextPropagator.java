@@ -0,0 +1,59 @@
+package org.sonatype.sisu.charger;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * ContextPropagator of the value of a ThreadLocal. The value itself is propagated (not a copy of it), hence it should
+ * be immutable, or thread safe.
+ * 
+ * @author cstamas
+ * @param <T>
+ */
+public class ThreadLocalContextPropagator<T>
+    implements ContextPropagator<T>
+{
+    private final ThreadLocal<T> threadLocal;
+
+    public ThreadLocalContextPropagator( final ThreadLocal<T> threadLocal )
+    {
+        this.threadLocal = Preconditions.checkNotNull( threadLocal );
+    }
+
+    @Override
+    public T capture()
+    {
+        return threadLocal.get();
+    }
+
+    @Override
+    public Object bind( final T context )
+    {
+        final T previous = threadLocal.get();
+
+        set( context );
+
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public void restore( final Object previous )
+    {
+        set( (T) previous );
+    }
+
+    // ==
+
+    private void set( final T value )
+    {
+        if ( value == null )
+        {
+            // not leaving an entry behind on pooled threads
+            threadLocal.remove();
+        }
+        else
+        {
+            threadLocal.set( value );
+        }
+    }
+}
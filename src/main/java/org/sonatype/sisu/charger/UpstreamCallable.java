@@ -0,0 +1,21 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Callable tagged with the name of the upstream (ie. remote repository) it talks to. Executors limiting concurrency per
+ * upstream use the tag to account the Callable to it's upstream.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public interface UpstreamCallable<E>
+    extends Callable<E>
+{
+    /**
+     * Returns the name of the upstream this Callable talks to, or null if not known.
+     * 
+     * @return
+     */
+    String getUpstream();
+}
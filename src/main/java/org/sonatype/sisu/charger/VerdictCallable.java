@@ -0,0 +1,58 @@
+package org.sonatype.sisu.charger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Callable passing it's own verdict on it's outcome to the executor, for executors learning the health of upstreams
+ * from the tasks they execute. The Callable knows better than the executor if an exception is a fine answer of the
+ * upstream (ie. "not found" handled by it's {@link ExceptionHandler}), or an interruption telling nothing about the
+ * upstream (ie. a cancelled loser). The verdict is passed before the outcome is passed on (the ammo of a charge does
+ * arrive), so the executor accounts the task as finished before anyone sees it's outcome. The ammo of charges are
+ * such Callables.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public interface VerdictCallable<E>
+    extends Callable<E>
+{
+    /**
+     * Receiver of the verdict, told exactly one of them per call.
+     */
+    interface Verdict
+    {
+        /**
+         * The upstream answered, with payload, or with an exception that is a fine answer.
+         */
+        void succeeded();
+
+        /**
+         * The upstream failed, ie. refused or did not answer in time.
+         */
+        void failed();
+
+        /**
+         * The call was cancelled, or it did not talk to the upstream at all: no verdict on the upstream.
+         */
+        void cancelled();
+    }
+
+    /**
+     * Calls this Callable, passing the verdict on it's outcome to given receiver before the outcome is passed on.
+     * 
+     * @param verdict
+     * @return
+     * @throws Exception
+     */
+    E call( Verdict verdict )
+        throws Exception;
+
+    /**
+     * Fails this Callable with the rejection of the executor that accepted it (ie. queued it) but is not able to run
+     * it, instead of calling it. The submitter sees the rejection as the outcome of the call.
+     * 
+     * @param e
+     */
+    void rejected( RejectedExecutionException e );
+}
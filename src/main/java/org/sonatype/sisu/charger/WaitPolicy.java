@@ -0,0 +1,25 @@
+package org.sonatype.sisu.charger;
+
+/**
+ * Policy what a thread waiting for the result of a charge does meanwhile. Matters when charges are nested: ammo that
+ * submits charges of it's own and waits for them, while occupying a thread of the very same bounded executor.
+ * 
+ * @author cstamas
+ */
+public enum WaitPolicy
+{
+    /**
+     * Just block until the charge is done. This is the default. With nested charges on a bounded executor, the waiting
+     * threads might hold all the threads of the executor, while the ammo they wait for sits in it's queue, and
+     * deadlock.
+     */
+    BLOCK,
+
+    /**
+     * Execute the ammo of the charge that was submitted to the executor but was not started by it yet, in the waiting
+     * thread, and block only when there is no such ammo left. A waiting thread is then always busy with the charge it
+     * waits for, or waits for ammo that is running, hence nested charges never deadlock a bounded executor, no matter
+     * how deep they are nested.
+     */
+    HELP;
+}
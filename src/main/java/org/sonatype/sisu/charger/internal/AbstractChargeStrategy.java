@@ -2,63 +2,90 @@ package org.sonatype.sisu.charger.internal;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
 
 import org.sonatype.sisu.charger.ChargeStrategy;
 
 public abstract class AbstractChargeStrategy
     implements ChargeStrategy
 {
-    protected <E> E getFutureResult( final ChargeWrapper<E> wrapper )
-        throws Exception
+    /**
+     * Returns true if the given done wrapper is able to decide a "first arrived" kind of charge: it either delivered
+     * some payload, or it failed with an exception not handled by it's ExceptionHandler. This method is meant to be
+     * invoked from the worker thread that just finished the wrapper, and might invoke the ExceptionHandler there, see
+     * {@link org.sonatype.sisu.charger.ExceptionHandler} about threading.
+     */
+    protected <E> boolean isDeciding( final ChargeWrapper<E> wrapper )
     {
-        try
+        final Throwable failure = wrapper.getFailure();
+
+        if ( failure == null )
         {
-            return wrapper.getFuture().get();
+            return wrapper.getResult() != null;
         }
-        catch ( ExecutionException e )
+        else if ( failure instanceof InterruptedException )
         {
-            if ( e.getCause() instanceof InterruptedException )
-            {
-                // we bailed out, just ignore it then
-            }
-            else if ( e.getCause() instanceof Exception )
-            {
-                final Exception cause = (Exception) e.getCause();
+            // we bailed out, just ignore it then
+            return false;
+        }
+        else if ( failure instanceof Exception )
+        {
+            return !wrapper.handle( (Exception) failure );
+        }
+        else
+        {
+            return true;
+        }
+    }
 
-                if ( !wrapper.handle( cause ) )
-                {
-                    throw cause;
-                }
-            }
-            else
-            {
-                throw new RuntimeException( e.getCause() );
-            }
+    /**
+     * Returns the payload of a wrapper that was found deciding by {@link #isDeciding(ChargeWrapper)}, or throws the
+     * unhandled exception it failed with.
+     */
+    protected <E> E getDecidingResult( final ChargeWrapper<E> wrapper )
+        throws Exception
+    {
+        final Throwable failure = wrapper.getFailure();
+
+        if ( failure == null )
+        {
+            return wrapper.getResult();
         }
-        catch ( CancellationException e )
+        else if ( failure instanceof Exception )
         {
-            // we ignore this
+            throw (Exception) failure;
         }
-        catch ( InterruptedException e )
+        else
         {
-            // we ignore this
+            throw new RuntimeException( failure );
         }
+    }
 
-        return null;
+    /**
+     * Returns the payload of a done wrapper, or null if it bailed out, failed with a handled exception, or did not run
+     * at all (ie. was cancelled). Throws the exception it failed with if not handled by it's ExceptionHandler. This
+     * method never blocks.
+     */
+    protected <E> E getWrapperResult( final ChargeWrapper<E> wrapper )
+        throws Exception
+    {
+        return wrapper.getOutcome();
     }
 
+    /**
+     * Returns all the payloads of the charge in ammo order, once charge is done. Blocks until then.
+     */
     protected <E> List<E> getAllResults( final Charge<E> charge )
         throws Exception
     {
+        charge.awaitDone();
+
         final List<ChargeWrapper<E>> ammo = charge.getAmmoFutures();
 
         final ArrayList<E> result = new ArrayList<E>( ammo.size() );
 
         for ( ChargeWrapper<E> f : ammo )
         {
-            E e = getFutureResult( f );
+            E e = getWrapperResult( f );
 
             if ( e != null )
             {
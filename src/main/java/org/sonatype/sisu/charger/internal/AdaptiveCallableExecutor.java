@@ -0,0 +1,463 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.PrioritizedCallable;
+import org.sonatype.sisu.charger.UpstreamCallable;
+import org.sonatype.sisu.charger.VerdictCallable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * CallableExecutor decorator limiting the count of tasks in flight per upstream, with limits learned from the observed
+ * latency and failures of the tasks (see {@link AdaptiveLimit}). Tasks are accounted to upstreams by their
+ * {@link UpstreamCallable} tags (the ammo of charges carry the tags of their callables), untagged tasks are passed to
+ * the delegate as is. Tasks over the limit are queued, up to the queue capacity per upstream, and rejected beyond it.
+ * By default the queue is not bounded. Mind that a charge is cancelled if the executor rejects any of it's ammo, so
+ * with a bounded queue a charge might fail partway, once it's ammo fills the queue.
+ * <p>
+ * Exceptions of the tasks count as failures of the upstream, and interruptions do not count at all, unless the task is
+ * a {@link VerdictCallable} passing it's own verdict, as the ammo of a charge does: an exception it's
+ * {@link org.sonatype.sisu.charger.ExceptionHandler} handled is a fine answer (ie. "not found"), an interruption for
+ * running out of time is a failure. Tasks passing their verdict give back their slot right before their outcome is
+ * passed on (before the ammo arrives), other tasks once they finished running. If the delegate rejects a queued task,
+ * as it cannot be rejected to it's submitter anymore, it's future fails with the rejection (and a
+ * {@link VerdictCallable} is told so, ammo of a charge arrives failed with it).
+ * <p>
+ * No monitor is taken: the counts of tasks in flight and queued are kept in atomics, and the queues are lock free.
+ * 
+ * @author cstamas
+ */
+public class AdaptiveCallableExecutor
+    implements CallableExecutor
+{
+    private final CallableExecutor delegate;
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int queueCapacity;
+
+    private final ConcurrentMap<String, Upstream> upstreams;
+
+    /**
+     * Creates an executor queueing the tasks over the limit, with no bound on the queue.
+     * 
+     * @param delegate
+     * @param initialLimit
+     * @param minLimit
+     * @param maxLimit
+     */
+    public AdaptiveCallableExecutor( final CallableExecutor delegate, final int initialLimit, final int minLimit,
+                                     final int maxLimit )
+    {
+        this( delegate, initialLimit, minLimit, maxLimit, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Creates an executor queueing the tasks over the limit, up to given capacity.
+     * 
+     * @param delegate
+     * @param initialLimit the limit of every upstream to start with.
+     * @param minLimit
+     * @param maxLimit
+     * @param queueCapacity the count of tasks queued per upstream at most, or zero to reject the tasks over the limit
+     *            right away.
+     */
+    public AdaptiveCallableExecutor( final CallableExecutor delegate, final int initialLimit, final int minLimit,
+                                     final int maxLimit, final int queueCapacity )
+    {
+        Preconditions.checkArgument( queueCapacity >= 0, "Queue capacity must not be negative!" );
+
+        // fail early on bad limits
+        new AdaptiveLimit( initialLimit, minLimit, maxLimit );
+
+        this.delegate = Preconditions.checkNotNull( delegate );
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueCapacity = queueCapacity;
+        this.upstreams = new ConcurrentHashMap<String, Upstream>();
+    }
+
+    /**
+     * Returns the limit learned for given upstream, or null if no task of it was executed yet.
+     * 
+     * @param upstream
+     * @return
+     */
+    public AdaptiveLimit getLimit( final String upstream )
+    {
+        final Upstream u = upstreams.get( upstream );
+
+        return u != null ? u.limit : null;
+    }
+
+    /**
+     * Returns the count of tasks of given upstream in flight.
+     * 
+     * @param upstream
+     * @return
+     */
+    public int getInFlight( final String upstream )
+    {
+        final Upstream u = upstreams.get( upstream );
+
+        return u != null ? u.inFlight.get() : 0;
+    }
+
+    @Override
+    public <T> Future<T> submit( final Callable<T> task )
+    {
+        final String name = task instanceof UpstreamCallable ? ( (UpstreamCallable<?>) task ).getUpstream() : null;
+
+        if ( name == null )
+        {
+            return delegate.submit( task );
+        }
+
+        final Upstream upstream = getUpstream( name );
+
+        final LimitedTask<T> limitedTask = new LimitedTask<T>( upstream, task );
+
+        if ( upstream.tryAcquire() )
+        {
+            try
+            {
+                delegate.submit( limitedTask );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                release( upstream );
+
+                throw e;
+            }
+
+            return limitedTask;
+        }
+
+        while ( true )
+        {
+            final int queued = upstream.queued.get();
+
+            if ( queued >= queueCapacity )
+            {
+                throw new RejectedExecutionException( "Upstream \"" + name + "\" is at it's limit of "
+                    + upstream.limit.getLimit() + " tasks in flight!" );
+            }
+
+            if ( upstream.queued.compareAndSet( queued, queued + 1 ) )
+            {
+                break;
+            }
+        }
+
+        upstream.queue.offer( limitedTask );
+
+        // a slot might got free before it was queued
+        drain( upstream );
+
+        return limitedTask;
+    }
+
+    // ==
+
+    protected Upstream getUpstream( final String name )
+    {
+        Upstream upstream = upstreams.get( name );
+
+        if ( upstream == null )
+        {
+            final Upstream created = new Upstream( new AdaptiveLimit( initialLimit, minLimit, maxLimit ) );
+
+            upstream = upstreams.putIfAbsent( name, created );
+
+            if ( upstream == null )
+            {
+                upstream = created;
+            }
+        }
+
+        return upstream;
+    }
+
+    /**
+     * Gives back the slot of a finished task, handing it over to the queued ones, as many as the limit allows.
+     * 
+     * @param upstream
+     */
+    protected void release( final Upstream upstream )
+    {
+        upstream.inFlight.decrementAndGet();
+
+        drain( upstream );
+    }
+
+    /**
+     * Submits the queued tasks to the delegate, as many as the limit allows. Both the ones queueing a task and the
+     * ones giving back a slot drain the queue after, so a queued task is never left behind with a slot free.
+     * 
+     * @param upstream
+     */
+    protected void drain( final Upstream upstream )
+    {
+        while ( !upstream.queue.isEmpty() && upstream.tryAcquire() )
+        {
+            final LimitedTask<?> task = upstream.queue.poll();
+
+            if ( task == null )
+            {
+                // drained by some other thread meanwhile
+                upstream.inFlight.decrementAndGet();
+
+                continue;
+            }
+
+            upstream.queued.decrementAndGet();
+
+            if ( task.isCancelled() )
+            {
+                upstream.inFlight.decrementAndGet();
+
+                continue;
+            }
+
+            try
+            {
+                delegate.submit( task );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                // it never runs, the slot it got goes to the next queued one, if any
+                upstream.inFlight.decrementAndGet();
+
+                task.reject( e );
+            }
+        }
+    }
+
+    // ==
+
+    /**
+     * An upstream, it's limit, it's queue, and the counts of it's tasks in flight and queued.
+     */
+    protected static final class Upstream
+    {
+        private final AdaptiveLimit limit;
+
+        private final ConcurrentLinkedQueue<LimitedTask<?>> queue;
+
+        private final AtomicInteger queued;
+
+        private final AtomicInteger inFlight;
+
+        private Upstream( final AdaptiveLimit limit )
+        {
+            this.limit = limit;
+            this.queue = new ConcurrentLinkedQueue<LimitedTask<?>>();
+            this.queued = new AtomicInteger( 0 );
+            this.inFlight = new AtomicInteger( 0 );
+        }
+
+        /**
+         * Takes a slot, if the limit allows.
+         * 
+         * @return true if slot was taken.
+         */
+        private boolean tryAcquire()
+        {
+            while ( true )
+            {
+                final int current = inFlight.get();
+
+                if ( current >= limit.getLimit() )
+                {
+                    return false;
+                }
+
+                if ( inFlight.compareAndSet( current, current + 1 ) )
+                {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * The task accounted to an upstream, feeding the limit with it's outcome, and giving back it's slot once done (even
+     * if it was cancelled before it did run). It is submitted to the delegate as is, carrying the priority of the task.
+     */
+    private final class LimitedTask<T>
+        extends FutureTask<T>
+        implements PrioritizedCallable<Object>
+    {
+        private final Callable<T> task;
+
+        private final int priority;
+
+        private final SampledCallable<T> sampled;
+
+        private LimitedTask( final Upstream upstream, final Callable<T> task )
+        {
+            this( new SampledCallable<T>( upstream, task ) );
+        }
+
+        private LimitedTask( final SampledCallable<T> sampled )
+        {
+            super( sampled );
+
+            this.task = sampled.task;
+            this.priority = task instanceof PrioritizedCallable ? ( (PrioritizedCallable<?>) task ).getPriority() : 0;
+            this.sampled = sampled;
+        }
+
+        /**
+         * Fails this queued task with the rejection of the delegate, without running it.
+         */
+        private void reject( final RejectedExecutionException e )
+        {
+            setException( e );
+
+            if ( task instanceof VerdictCallable )
+            {
+                ( (VerdictCallable<?>) task ).rejected( e );
+            }
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return priority;
+        }
+
+        @Override
+        public Object call()
+        {
+            run();
+
+            return null;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                super.run();
+            }
+            finally
+            {
+                // if it was not run, or it passed no verdict
+                sampled.release();
+            }
+        }
+    }
+
+    /**
+     * The task feeding the limit of it's upstream with the verdict on it's outcome, and giving back it's slot once the
+     * verdict is known.
+     */
+    private final class SampledCallable<T>
+        implements Callable<T>, VerdictCallable.Verdict
+    {
+        private final Upstream upstream;
+
+        private final Callable<T> task;
+
+        // accessed by the thread running the task only
+
+        private long start;
+
+        private boolean released;
+
+        private SampledCallable( final Upstream upstream, final Callable<T> task )
+        {
+            this.upstream = upstream;
+            this.task = task;
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        public T call()
+            throws Exception
+        {
+            start = System.nanoTime();
+
+            if ( task instanceof VerdictCallable )
+            {
+                return ( (VerdictCallable<T>) task ).call( this );
+            }
+
+            try
+            {
+                final T result = task.call();
+
+                succeeded();
+
+                return result;
+            }
+            catch ( InterruptedException e )
+            {
+                cancelled();
+
+                throw e;
+            }
+            catch ( Exception e )
+            {
+                failed();
+
+                throw e;
+            }
+            catch ( Error e )
+            {
+                failed();
+
+                throw e;
+            }
+        }
+
+        @Override
+        public void succeeded()
+        {
+            // in flight, including this one
+            upstream.limit.onSuccess( System.nanoTime() - start, upstream.inFlight.get() );
+
+            release();
+        }
+
+        @Override
+        public void failed()
+        {
+            upstream.limit.onFailure();
+
+            release();
+        }
+
+        @Override
+        public void cancelled()
+        {
+            release();
+        }
+
+        private void release()
+        {
+            if ( !released )
+            {
+                released = true;
+
+                AdaptiveCallableExecutor.this.release( upstream );
+            }
+        }
+    }
+}
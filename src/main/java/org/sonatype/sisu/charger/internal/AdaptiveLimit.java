@@ -0,0 +1,161 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Concurrency limit learned from the observed latency and failures, using additive increase, multiplicative decrease
+ * (AIMD). Every sample of an execution that succeeded in time raises the limit by one per "limit" samples (about one
+ * per round trip), while a failure, or a sample slower than twice the long term latency (the upstream queues up
+ * requests) cuts it by a tenth. The limit is raised only if it is being used, so an idle upstream does not collect
+ * headroom it never proved to handle.
+ * <p>
+ * The long term latency is a slow moving average of the samples, so a lasting change of upstream latency becomes the
+ * new normal eventually.
+ * <p>
+ * The limit and the latency are updated by compare-and-set, no monitor is taken by the tasks reporting their samples.
+ * A raise racing with a cut is dropped, the cut wins.
+ * 
+ * @author cstamas
+ */
+public class AdaptiveLimit
+{
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private static final double TOLERANCE = 2.0;
+
+    private static final double SMOOTHING = 0.01;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger limit;
+
+    /**
+     * Count of samples using the limit since it was raised last, it is raised by one once they reach the limit.
+     */
+    private final AtomicInteger samples;
+
+    private final AtomicLong longTermLatency;
+
+    public AdaptiveLimit( final int initialLimit, final int minLimit, final int maxLimit )
+    {
+        Preconditions.checkArgument( minLimit > 0, "Minimal limit must be positive!" );
+        Preconditions.checkArgument( minLimit <= initialLimit && initialLimit <= maxLimit,
+            "Initial limit must be between minimal and maximal limit!" );
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = new AtomicInteger( initialLimit );
+        this.samples = new AtomicInteger( 0 );
+        this.longTermLatency = new AtomicLong( 0 );
+    }
+
+    public int getMinLimit()
+    {
+        return minLimit;
+    }
+
+    public int getMaxLimit()
+    {
+        return maxLimit;
+    }
+
+    /**
+     * Returns the current limit.
+     * 
+     * @return
+     */
+    public int getLimit()
+    {
+        return limit.get();
+    }
+
+    /**
+     * Records a sample of an execution that succeeded.
+     * 
+     * @param latencyNanos the time the execution took.
+     * @param inFlight the count of executions in flight when it finished, including itself.
+     */
+    public void onSuccess( final long latencyNanos, final int inFlight )
+    {
+        longTermLatency.compareAndSet( 0, latencyNanos );
+
+        final long longTerm = longTermLatency.get();
+
+        if ( latencyNanos > TOLERANCE * longTerm )
+        {
+            decrease();
+        }
+        else if ( inFlight * 2 >= limit.get() )
+        {
+            increase();
+        }
+
+        while ( true )
+        {
+            final long current = longTermLatency.get();
+
+            final long next = current + (long) ( ( latencyNanos - current ) * SMOOTHING );
+
+            if ( next == current || longTermLatency.compareAndSet( current, next ) )
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records an execution that failed (ie. upstream refused or timed out).
+     */
+    public void onFailure()
+    {
+        decrease();
+    }
+
+    // ==
+
+    private void increase()
+    {
+        while ( true )
+        {
+            final int current = limit.get();
+
+            final int count = samples.get();
+
+            if ( count + 1 < current )
+            {
+                if ( samples.compareAndSet( count, count + 1 ) )
+                {
+                    return;
+                }
+            }
+            else if ( samples.compareAndSet( count, 0 ) )
+            {
+                // fails if cut meanwhile
+                limit.compareAndSet( current, Math.min( maxLimit, current + 1 ) );
+
+                return;
+            }
+        }
+    }
+
+    private void decrease()
+    {
+        while ( true )
+        {
+            final int current = limit.get();
+
+            // rounded down, so it is cut by one at least
+            final int next = Math.max( minLimit, (int) ( current * BACKOFF_RATIO ) );
+
+            if ( next == current || limit.compareAndSet( current, next ) )
+            {
+                return;
+            }
+        }
+    }
+}
@@ -24,17 +24,7 @@ public class AllArrivedChargeStrategy
     public <E> boolean isDone( final Charge<E> charge )
     {
         // done if all done, otherwise not
-        List<ChargeWrapper<E>> ammoFutures = charge.getAmmoFutures();
-
-        for ( ChargeWrapper<E> a : ammoFutures )
-        {
-            if ( !a.getFuture().isDone() )
-            {
-                return false;
-            }
-        }
-
-        return true;
+        return charge.getCompletedCount() >= charge.getAmmoFutures().size();
     }
 
     @Override
@@ -0,0 +1,397 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.sonatype.sisu.charger.BatchCallableExecutor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * BatchCallableExecutor with fixed count of worker threads, optimized for charges of many ammo. A batch of tasks is
+ * enqueued as one unit, with one lock acquisition, and only as many idle workers are woken as there are tasks (at
+ * most). Workers then claim the tasks of the batch at the head of the queue one by one, without taking the lock.
+ * <p>
+ * Single tasks skip the batch bookkeeping: they are enqueued as they are, and runnables handed over by
+ * {@link #execute(Runnable)} (ie. the ammo of charges, being their own futures) are not even wrapped into a future.
+ * 
+ * @author cstamas
+ */
+public class BatchingCallableExecutor
+    implements BatchCallableExecutor, Executor
+{
+    /**
+     * Tasks enqueued as one unit, claimed by workers by advancing the cursor.
+     */
+    private static final class Batch
+    {
+        final FutureTask<?>[] tasks;
+
+        final AtomicInteger cursor = new AtomicInteger( 0 );
+
+        Batch( final FutureTask<?>[] tasks )
+        {
+            this.tasks = tasks;
+        }
+    }
+
+    private final ReentrantLock lock;
+
+    private final Condition available;
+
+    private final Condition terminated;
+
+    // batches and single runnables
+    private final ArrayDeque<Object> queue;
+
+    private final List<Thread> workers;
+
+    private int idleWorkers;
+
+    private int liveWorkers;
+
+    private boolean shutdown;
+
+    public BatchingCallableExecutor( final int workerCount )
+    {
+        this( workerCount, new ThreadFactoryBuilder().setNameFormat( "charge-worker-%d" ).setDaemon( true ).build() );
+    }
+
+    public BatchingCallableExecutor( final int workerCount, final ThreadFactory threadFactory )
+    {
+        Preconditions.checkArgument( workerCount > 0, "Worker count must be positive!" );
+        Preconditions.checkNotNull( threadFactory );
+
+        this.lock = new ReentrantLock();
+        this.available = lock.newCondition();
+        this.terminated = lock.newCondition();
+        this.queue = new ArrayDeque<Object>();
+        this.liveWorkers = workerCount;
+
+        final ArrayList<Thread> threads = new ArrayList<Thread>( workerCount );
+
+        for ( int i = 0; i < workerCount; i++ )
+        {
+            final Thread thread = threadFactory.newThread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    work();
+                }
+            } );
+
+            threads.add( thread );
+
+            thread.start();
+        }
+
+        this.workers = Collections.unmodifiableList( threads );
+    }
+
+    public int getWorkerCount()
+    {
+        return workers.size();
+    }
+
+    @Override
+    public <T> Future<T> submit( final Callable<T> task )
+    {
+        final FutureTask<T> futureTask = new FutureTask<T>( Preconditions.checkNotNull( task ) );
+
+        execute( futureTask );
+
+        return futureTask;
+    }
+
+    /**
+     * Executes the given runnable as it is, with no future of it's own. It must not throw, as there is nobody to
+     * catch it but the worker (ie. it should be a future recording it's outcome).
+     * 
+     * @param command
+     */
+    @Override
+    public void execute( final Runnable command )
+    {
+        Preconditions.checkNotNull( command );
+
+        lock.lock();
+
+        try
+        {
+            if ( shutdown )
+            {
+                throw new RejectedExecutionException( "Executor was shut down!" );
+            }
+
+            queue.addLast( command );
+
+            if ( idleWorkers > 0 )
+            {
+                available.signal();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> List<Future<T>> submitAll( final List<? extends Callable<T>> tasks )
+    {
+        final FutureTask<?>[] futureTasks = new FutureTask<?>[tasks.size()];
+
+        final ArrayList<Future<T>> result = new ArrayList<Future<T>>( futureTasks.length );
+
+        for ( int i = 0; i < futureTasks.length; i++ )
+        {
+            final FutureTask<T> futureTask = new FutureTask<T>( Preconditions.checkNotNull( tasks.get( i ) ) );
+
+            futureTasks[i] = futureTask;
+
+            result.add( futureTask );
+        }
+
+        if ( futureTasks.length == 0 )
+        {
+            return result;
+        }
+
+        lock.lock();
+
+        try
+        {
+            if ( shutdown )
+            {
+                throw new RejectedExecutionException( "Executor was shut down!" );
+            }
+
+            queue.addLast( new Batch( futureTasks ) );
+
+            // the ones not woken will find the batch once they are done with their current task
+            for ( int i = Math.min( futureTasks.length, idleWorkers ); i > 0; i-- )
+            {
+                available.signal();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * Initiates an orderly shutdown, tasks already submitted are still executed.
+     */
+    public void shutdown()
+    {
+        lock.lock();
+
+        try
+        {
+            shutdown = true;
+
+            available.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true if this executor was shut down, and all it's workers are gone.
+     * 
+     * @return
+     */
+    public boolean isTerminated()
+    {
+        lock.lock();
+
+        try
+        {
+            return shutdown && liveWorkers == 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until all the tasks are executed after a shutdown, or given time elapses, or the current thread is
+     * interrupted, whichever happens first.
+     * 
+     * @param timeout
+     * @param unit
+     * @return true if this executor terminated, false if time elapsed before.
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        long nanos = unit.toNanos( timeout );
+
+        lock.lockInterruptibly();
+
+        try
+        {
+            while ( !shutdown || liveWorkers > 0 )
+            {
+                if ( nanos <= 0 )
+                {
+                    return false;
+                }
+
+                nanos = terminated.awaitNanos( nanos );
+            }
+
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // ==
+
+    protected void work()
+    {
+        try
+        {
+            Object next;
+
+            while ( ( next = takeNext() ) != null )
+            {
+                if ( next instanceof Batch )
+                {
+                    runBatch( (Batch) next );
+                }
+                else
+                {
+                    // clear the interrupt of a cancelled previous task
+                    Thread.interrupted();
+
+                    try
+                    {
+                        ( (Runnable) next ).run();
+                    }
+                    catch ( RuntimeException e )
+                    {
+                        // nobody to report it to, keep the worker alive
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.lock();
+
+            try
+            {
+                if ( --liveWorkers == 0 )
+                {
+                    terminated.signalAll();
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void runBatch( final Batch batch )
+    {
+        final FutureTask<?>[] tasks = batch.tasks;
+
+        int index;
+
+        while ( ( index = batch.cursor.getAndIncrement() ) < tasks.length )
+        {
+            // clear the interrupt of a cancelled previous task
+            Thread.interrupted();
+
+            // a FutureTask never throws, it records the outcome
+            tasks[index].run();
+        }
+
+        // first one finding it exhausted removes it
+        removeBatch( batch );
+    }
+
+    /**
+     * Returns the batch at the head of the queue, left there for the other workers to claim it's tasks too, or the
+     * single runnable at the head of the queue, removed from it. Returns null once shut down and the queue is empty.
+     * 
+     * @return
+     */
+    private Object takeNext()
+    {
+        lock.lock();
+
+        try
+        {
+            while ( queue.isEmpty() )
+            {
+                if ( shutdown )
+                {
+                    return null;
+                }
+
+                idleWorkers++;
+
+                try
+                {
+                    available.awaitUninterruptibly();
+                }
+                finally
+                {
+                    idleWorkers--;
+                }
+            }
+
+            final Object head = queue.peekFirst();
+
+            return head instanceof Batch ? head : queue.pollFirst();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void removeBatch( final Batch batch )
+    {
+        lock.lock();
+
+        try
+        {
+            if ( queue.peekFirst() == batch )
+            {
+                queue.pollFirst();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
@@ -1,39 +1,181 @@
 package org.sonatype.sisu.charger.internal;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+import org.sonatype.sisu.charger.AdmissionControl;
+import org.sonatype.sisu.charger.BatchCallableExecutor;
 import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.ExtendedChargeFuture;
+import org.sonatype.sisu.charger.ChargeListener;
+import org.sonatype.sisu.charger.ChargeMetrics;
 import org.sonatype.sisu.charger.ChargeStrategy;
+import org.sonatype.sisu.charger.ContextPropagator;
+import org.sonatype.sisu.charger.DeadlinePolicy;
 import org.sonatype.sisu.charger.ExceptionHandler;
+import org.sonatype.sisu.charger.LoserPolicy;
+import org.sonatype.sisu.charger.ResultCache;
+import org.sonatype.sisu.charger.ResultStream;
+import org.sonatype.sisu.charger.RetryPolicy;
+import org.sonatype.sisu.charger.SingleFlight;
+import org.sonatype.sisu.charger.UpstreamCallable;
+import org.sonatype.sisu.charger.WaitPolicy;
 
 import com.google.common.base.Preconditions;
 
 /**
- * Amount of parallel workload.
+ * Amount of parallel workload. A charge is it's own {@link ExtendedChargeFuture} too.
+ * <p>
+ * Every charge being allocated on every submission, it keeps it's counters and flags in plain volatile fields updated
+ * by field updaters shared by all the charges, instead of having an atomic object per counter. The "done" signal and
+ * it's listeners live in {@link ChargeCompletion}. The rest is created only for charges that need it: the optional
+ * features in {@link ChargeFeatures} once one is set, the admission in {@link ChargeAdmission} if the charge is
+ * subject of admission control, the arrival order in {@link ChargeArrivals} once somebody streams the payloads, and
+ * the timeouts of ammo in {@link ChargeTimeouts} if the charge has ammo with a time budget.
  * 
  * @author cstamas
  * @param <E>
  */
 public class Charge<E>
+    implements ExtendedChargeFuture<E>
 {
-    private final List<ChargeWrapper<E>> ammunition;
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<Charge, ChargeArrivals> ARRIVALS =
+        AtomicReferenceFieldUpdater.newUpdater( Charge.class, ChargeArrivals.class, "arrivals" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<Charge, CallableExecutor> EXECUTOR =
+        AtomicReferenceFieldUpdater.newUpdater( Charge.class, CallableExecutor.class, "executor" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<Charge, Object> STRATEGY_STATE =
+        AtomicReferenceFieldUpdater.newUpdater( Charge.class, Object.class, "strategyState" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicIntegerFieldUpdater<Charge> COMPLETED =
+        AtomicIntegerFieldUpdater.newUpdater( Charge.class, "completed" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicIntegerFieldUpdater<Charge> RECLAIMED =
+        AtomicIntegerFieldUpdater.newUpdater( Charge.class, "reclaimed" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<Charge, ChargeTimeouts> TIMEOUTS =
+        AtomicReferenceFieldUpdater.newUpdater( Charge.class, ChargeTimeouts.class, "timeouts" );
+
+    private final ArrayList<ChargeWrapper<E>> ammunition;
 
     private final ChargeStrategy strategy;
 
-    private volatile boolean done;
+    private volatile Object strategyState;
+
+    private volatile int completed;
+
+    private volatile CallableExecutor executor;
+
+    private final ChargeCompletion completion;
+
+    private volatile int reclaimed;
+
+    private volatile LoserPolicy loserPolicy;
+
+    private volatile WaitPolicy waitPolicy;
+
+    private volatile ChargeFeatures features;
+
+    private volatile ChargeAdmission admission;
+
+    private volatile ChargeArrivals<E> arrivals;
+
+    private volatile ChargeTimeouts<E> timeouts;
 
     public Charge( final ChargeStrategy strategy )
     {
+        this( strategy, 10 );
+    }
+
+    /**
+     * Creates a charge with storage for given count of ammo, to not grow it while the ammo is added.
+     * 
+     * @param strategy
+     * @param expectedAmmoCount the count of ammo expected to be added.
+     */
+    public Charge( final ChargeStrategy strategy, final int expectedAmmoCount )
+    {
+        Preconditions.checkArgument( expectedAmmoCount >= 0, "Expected ammo count must not be negative!" );
+
         this.strategy = Preconditions.checkNotNull( strategy );
 
-        this.ammunition = new ArrayList<ChargeWrapper<E>>();
+        this.ammunition = new ArrayList<ChargeWrapper<E>>( expectedAmmoCount );
+
+        this.completion = new ChargeCompletion();
+
+        this.loserPolicy = LoserPolicy.NONE;
+
+        this.waitPolicy = WaitPolicy.BLOCK;
     }
 
     public void addAmmo( final Callable<? extends E> callable, final ExceptionHandler exceptionHandler )
     {
-        ammunition.add( new ChargeWrapper<E>( this, callable, exceptionHandler ) );
+        addAmmo( callable, exceptionHandler, 0, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Adds ammo having it's own time budget, counted from the moment it is launched. If it does not arrive in time, it
+     * is cancelled (interrupted if running), and arrives as failed with {@link TimeoutException}, that is passed to
+     * it's ExceptionHandler as any other exception would be. Timeouts are fired by the timer shared by charges, with
+     * one timer task per charge at a time, for the earliest pending deadline of it's ammo.
+     * 
+     * @param callable
+     * @param exceptionHandler
+     * @param timeout the time budget of ammo, or zero if it has none.
+     * @param unit
+     */
+    public void addAmmo( final Callable<? extends E> callable, final ExceptionHandler exceptionHandler,
+                         final long timeout, final TimeUnit unit )
+    {
+        addAmmo( callable, exceptionHandler, timeout, unit,
+            callable instanceof UpstreamCallable ? ( (UpstreamCallable<?>) callable ).getUpstream() : null );
+    }
+
+    /**
+     * Adds ammo tagged with the name of upstream it talks to, for executors limiting concurrency per upstream. Ammo
+     * added by other means is tagged if it's callable is an {@link UpstreamCallable}.
+     * 
+     * @param callable
+     * @param exceptionHandler
+     * @param timeout the time budget of ammo, or zero if it has none.
+     * @param unit
+     * @param upstream the name of upstream, or null if not known.
+     */
+    public void addAmmo( final Callable<? extends E> callable, final ExceptionHandler exceptionHandler,
+                         final long timeout, final TimeUnit unit, final String upstream )
+    {
+        ammunition.add( new ChargeWrapper<E>( this, ammunition.size(), callable, exceptionHandler,
+            unit.toNanos( timeout ), upstream ) );
+    }
+
+    /**
+     * Makes room for given count of ammo, to not grow the storage while the ammo is added. Meant to be invoked before
+     * the ammo is added, by the one creating the charge.
+     * 
+     * @param expectedAmmoCount the count of ammo expected to be added.
+     */
+    public void ensureAmmoCapacity( final int expectedAmmoCount )
+    {
+        Preconditions.checkArgument( expectedAmmoCount >= 0, "Expected ammo count must not be negative!" );
+
+        ammunition.ensureCapacity( expectedAmmoCount );
     }
 
     public List<ChargeWrapper<E>> getAmmoFutures()
@@ -41,52 +183,1206 @@ public class Charge<E>
         return ammunition;
     }
 
-    public synchronized void exec( final CallableExecutor runner )
+    public LoserPolicy getLoserPolicy()
     {
-        for ( ChargeWrapper<E> ammo : ammunition )
+        return loserPolicy;
+    }
+
+    /**
+     * Sets the policy what to do with ammo still not finished when strategy decides this charge is done. Should be set
+     * before charge is executed.
+     * 
+     * @param loserPolicy
+     */
+    public void setLoserPolicy( final LoserPolicy loserPolicy )
+    {
+        this.loserPolicy = Preconditions.checkNotNull( loserPolicy );
+    }
+
+    public DeadlinePolicy getDeadlinePolicy()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.deadlinePolicy : DeadlinePolicy.FAIL;
+    }
+
+    /**
+     * Sets the policy what to do when charge is not done within time limit given to
+     * {@link #getResult(long, TimeUnit)}.
+     * 
+     * @param deadlinePolicy
+     */
+    public void setDeadlinePolicy( final DeadlinePolicy deadlinePolicy )
+    {
+        if ( DeadlinePolicy.FAIL != Preconditions.checkNotNull( deadlinePolicy ) || features != null )
         {
-            ammo.setFuture( runner.submit( ammo ) );
+            features().deadlinePolicy = deadlinePolicy;
         }
     }
 
-    public boolean cancel( final boolean mayInterruptIfRunning )
+    public WaitPolicy getWaitPolicy()
+    {
+        return waitPolicy;
+    }
+
+    /**
+     * Sets the policy what threads waiting for this charge to be done do meanwhile.
+     * 
+     * @param waitPolicy
+     */
+    public void setWaitPolicy( final WaitPolicy waitPolicy )
     {
-        if ( isDone() )
+        this.waitPolicy = Preconditions.checkNotNull( waitPolicy );
+    }
+
+    public String getName()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.name : null;
+    }
+
+    /**
+     * Sets the name of this charge, or null if it is not named. Metrics of charges are aggregated per name too.
+     * 
+     * @param name
+     */
+    public void setName( final String name )
+    {
+        if ( name != null || features != null )
         {
-            return false;
+            features().name = name;
+        }
+    }
+
+    public ChargeMetrics getMetrics()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.metrics : null;
+    }
+
+    /**
+     * Sets the metrics this charge reports it's timings to, or null if none. Should be set before charge is executed.
+     * 
+     * @param metrics
+     */
+    public void setMetrics( final ChargeMetrics metrics )
+    {
+        if ( metrics != null || features != null )
+        {
+            features().metrics = metrics;
+        }
+    }
+
+    public ChargeListener getListener()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.listener : null;
+    }
+
+    /**
+     * Sets the listener of this charge' lifecycle, or null if none. Should be set before charge is executed. Failures
+     * of the listener are logged and ignored.
+     * 
+     * @param listener
+     */
+    public void setListener( final ChargeListener listener )
+    {
+        if ( listener == null )
+        {
+            if ( features != null )
+            {
+                features.listener = null;
+            }
+        }
+        else if ( listener instanceof CompositeChargeListener )
+        {
+            features().listener = listener;
         }
         else
         {
-            for ( ChargeWrapper<E> wrapper : ammunition )
+            features().listener = new CompositeChargeListener( Collections.singletonList( listener ) );
+        }
+    }
+
+    public int getPriority()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.priority : 0;
+    }
+
+    /**
+     * Sets the priority of this charge, the higher the more urgent, zero being the default. The ammo of charge carries
+     * it to the executor, and executors aware of priorities run the ammo of higher priority first (see
+     * {@link PriorityCallableExecutor}). Should be set before charge is executed.
+     * 
+     * @param priority
+     */
+    public void setPriority( final int priority )
+    {
+        if ( priority != 0 || features != null )
+        {
+            features().priority = priority;
+        }
+    }
+
+    public RetryPolicy getRetryPolicy()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.retryPolicy : null;
+    }
+
+    /**
+     * Sets the retry policy applied to ammo having a {@link org.sonatype.sisu.charger.RetryingExceptionHandler}, or
+     * null to not retry at all. Should be set before charge is executed.
+     * 
+     * @param retryPolicy
+     */
+    public void setRetryPolicy( final RetryPolicy retryPolicy )
+    {
+        if ( retryPolicy != null || features != null )
+        {
+            features().retryPolicy = retryPolicy;
+        }
+    }
+
+    /**
+     * Attaches given context to this charge, to be bound by given propagator around every execution of it's ammo.
+     * Should be invoked before charge is executed.
+     * 
+     * @param propagator
+     * @param context the context, or null if there is none (the executing threads have none bound either).
+     */
+    public <C> void addContext( final ContextPropagator<C> propagator, final C context )
+    {
+        final ChargeFeatures features = features();
+
+        features.context = features.context.with( propagator, context );
+    }
+
+    /**
+     * Captures the context bound to the calling thread by given propagator, and attaches it to this charge, to be
+     * bound around every execution of it's ammo. Should be invoked before charge is executed.
+     * 
+     * @param propagator
+     */
+    public <C> void captureContext( final ContextPropagator<C> propagator )
+    {
+        addContext( propagator, propagator.capture() );
+    }
+
+    /**
+     * Returns the contexts attached to this charge.
+     * 
+     * @return
+     */
+    ContextSnapshot getContext()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.context : ContextSnapshot.EMPTY;
+    }
+
+    public SingleFlight getSingleFlight()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.singleFlight : null;
+    }
+
+    /**
+     * Sets the single flight the keyed ammo of this charge is executed through, or null if none, in which case keyed
+     * ammo is executed as any other ammo. Should be set before charge is executed.
+     * 
+     * @param singleFlight
+     */
+    public void setSingleFlight( final SingleFlight singleFlight )
+    {
+        if ( singleFlight != null || features != null )
+        {
+            features().singleFlight = singleFlight;
+        }
+    }
+
+    public ResultCache getResultCache()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.resultCache : null;
+    }
+
+    /**
+     * Sets the cache the outcomes of keyed ammo of this charge are cached in, or null if none. Keyed ammo having it's
+     * outcome cached is not submitted to the executor, but delivers it right away. Should be set before charge is
+     * executed.
+     * 
+     * @param resultCache
+     */
+    public void setResultCache( final ResultCache resultCache )
+    {
+        if ( resultCache != null || features != null )
+        {
+            features().resultCache = resultCache;
+        }
+    }
+
+    public AdmissionControl getAdmissionControl()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.admissionControl : null;
+    }
+
+    /**
+     * Sets the admission control this charge is subject of, or null if none. Should be set before charge is executed.
+     * 
+     * @param admissionControl
+     */
+    public void setAdmissionControl( final AdmissionControl admissionControl )
+    {
+        if ( admissionControl != null || features != null )
+        {
+            features().admissionControl = admissionControl;
+        }
+    }
+
+    /**
+     * Returns the count of ammo cancelled by the charge itself, by loser policy or on deadline.
+     * 
+     * @return
+     */
+    public int getReclaimedCount()
+    {
+        return reclaimed;
+    }
+
+    /**
+     * Executes this charge using given executor. A charge is executed as whole, or not at all: if it is not admitted
+     * by it's admission control, nothing is submitted, and it might be executed again later. If the executor rejects
+     * any of it's ammo, the ammo submitted already is cancelled (the running ones are interrupted), and the charge is
+     * done. If the charge was decided before the rejection, the ammo not submitted is abandoned, and the rejection is
+     * still thrown. Otherwise, a charge might be executed only once.
+     * 
+     * @param runner
+     * @throws RejectedExecutionException if the charge was not admitted, or the executor rejected the ammo.
+     * @throws IllegalStateException if this charge was executed already.
+     */
+    public void exec( final CallableExecutor runner )
+    {
+        // no monitor held while submitting, as executors might block (and would pin a virtual thread)
+        if ( !EXECUTOR.compareAndSet( this, null, Preconditions.checkNotNull( runner ) ) )
+        {
+            throw new IllegalStateException( "Charge was executed already!" );
+        }
+
+        final ChargeFeatures features = this.features;
+
+        if ( features != null )
+        {
+            if ( features.metrics != null )
+            {
+                features.recorder = features.metrics.getRecorder( features.name, strategy );
+            }
+
+            final AdmissionControl admissionControl = features.admissionControl;
+
+            if ( admissionControl != null )
+            {
+                try
+                {
+                    admission = new ChargeAdmission( admissionControl, admissionControl.admit( ammunition.size() ) );
+                }
+                catch ( RejectedExecutionException e )
+                {
+                    // nothing happened
+                    executor = null;
+
+                    throw e;
+                }
+            }
+
+            if ( features.listener != null )
+            {
+                features.listener.chargeSubmitted( this );
+            }
+        }
+
+        try
+        {
+            launchAmmo();
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // the launched ammo (and the slots they hold) arrive as cancelled
+            if ( signalCancelled() )
+            {
+                cancelUnfinished( true );
+
+                fireCancelled();
+
+                runListeners();
+            }
+            else
+            {
+                // decided meanwhile: nothing would ever submit the rejected ammo and the ones after it
+                for ( ChargeWrapper<E> ammo : ammunition )
+                {
+                    if ( ammo.getFuture() == null )
+                    {
+                        ammo.abandon();
+                    }
+                }
+            }
+
+            throw e;
+        }
+
+        if ( ammunition.isEmpty() )
+        {
+            if ( signalDone() )
             {
-                wrapper.getFuture().cancel( mayInterruptIfRunning );
+                runListeners();
             }
+        }
+        else if ( isDone() )
+        {
+            // decided while we were still submitting, catch the ones submitted after the decision
+            reclaimLosers();
+        }
+    }
+
+    public boolean cancel( final boolean mayInterruptIfRunning )
+    {
+        if ( signalCancelled() )
+        {
+            cancelUnfinished( mayInterruptIfRunning );
+
+            fireCancelled();
+
+            runListeners();
 
             return true;
         }
+        else
+        {
+            return false;
+        }
     }
 
     public boolean isDone()
     {
-        return done;
+        return completion.isDone();
+    }
+
+    public boolean isCancelled()
+    {
+        return completion.isCancelled();
+    }
+
+    /**
+     * Blocks until this charge is done, as decided by it's strategy, or is cancelled. With {@link WaitPolicy#HELP}
+     * the calling thread executes the queued ammo of this charge first.
+     * 
+     * @throws InterruptedException
+     */
+    public void awaitDone()
+        throws InterruptedException
+    {
+        if ( WaitPolicy.HELP == waitPolicy )
+        {
+            help( Long.MAX_VALUE );
+        }
+
+        completion.await();
+    }
+
+    /**
+     * Blocks until this charge is done, as decided by it's strategy, or is cancelled, but at most for given time. With
+     * {@link WaitPolicy#HELP} the calling thread executes the queued ammo of this charge first, but does not start
+     * new ones once the time elapsed (the ones it started might overrun the time given).
+     * 
+     * @param timeout
+     * @param unit
+     * @return true if charge is done, false if time elapsed before.
+     * @throws InterruptedException
+     */
+    public boolean awaitDone( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        if ( WaitPolicy.HELP == waitPolicy )
+        {
+            final long nanos = unit.toNanos( timeout );
+
+            final long start = System.nanoTime();
+
+            help( nanos );
+
+            return completion.await( nanos - ( System.nanoTime() - start ), TimeUnit.NANOSECONDS );
+        }
+
+        return completion.await( timeout, unit );
+    }
+
+    /**
+     * Registers a listener to be run on given executor once this charge is done, as decided by it's strategy, or is
+     * cancelled or timed out. Listeners added after charge is done are executed immediately.
+     * 
+     * @param listener
+     * @param executor
+     */
+    public void addListener( final Runnable listener, final Executor executor )
+    {
+        completion.addListener( listener, executor );
+    }
+
+    /**
+     * Returns the count of ammo that finished execution (or bailed out), and were already reported to the strategy.
+     * 
+     * @return
+     */
+    public int getCompletedCount()
+    {
+        return completed;
+    }
+
+    /**
+     * Returns a new stream of charge' payloads, in order as they arrive.
+     * 
+     * @return
+     */
+    public ResultStream<E> getResultStream()
+    {
+        return new DefaultResultStream<E>( this );
     }
 
     public List<E> getResult()
         throws Exception
     {
+        final ChargeMetrics.Recorder recorder = getRecorder();
+
+        if ( recorder == null )
+        {
+            return strategy.getResult( this );
+        }
+
+        final long start = System.nanoTime();
+
+        try
+        {
+            return strategy.getResult( this );
+        }
+        finally
+        {
+            recorder.recordResultWait( System.nanoTime() - start );
+        }
+    }
+
+    public List<E> getResult( final long timeout, final TimeUnit unit )
+        throws Exception
+    {
+        final ChargeMetrics.Recorder recorder = getRecorder();
+
+        if ( recorder == null )
+        {
+            return getResultWithin( timeout, unit );
+        }
+
+        final long start = System.nanoTime();
+
+        try
+        {
+            return getResultWithin( timeout, unit );
+        }
+        finally
+        {
+            recorder.recordResultWait( System.nanoTime() - start );
+        }
+    }
+
+    private List<E> getResultWithin( final long timeout, final TimeUnit unit )
+        throws Exception
+    {
+        // if we are the ones marking it done, the strategy did not decide, it's a timeout
+        if ( !awaitDone( timeout, unit ) && signalCancelled() )
+        {
+            RECLAIMED.addAndGet( this, cancelUnfinished( true ) );
+
+            fireCancelled();
+
+            runListeners();
+
+            if ( DeadlinePolicy.FAIL == getDeadlinePolicy() )
+            {
+                throw new TimeoutException( "Charge was not done in " + timeout + " " + unit.toString().toLowerCase()
+                    + ", " + getCompletedCount() + " of " + ammunition.size() + " ammo arrived." );
+            }
+        }
+
         return strategy.getResult( this );
     }
 
-    public synchronized void checkIsDone( final ChargeWrapper<E> wrapper )
+    public void checkIsDone( final ChargeWrapper<E> wrapper )
     {
-        if ( strategy.isDone( this ) )
+        if ( !isDone() && strategy.isDone( this ) && signalDone() )
         {
-            done = true;
+            final ChargeListener listener = getListener();
+
+            if ( listener != null )
+            {
+                listener.chargeDecided( this );
+            }
+
+            // losers first, a slow listener must not keep them running
+            reclaimLosers();
+
+            runListeners();
         }
     }
 
+    /**
+     * Returns the ammo that arrived at given position in order of arrival, blocking until it arrives, but at most for
+     * given time. Every ammo arrives eventually, unless it is running and is never finished.
+     * 
+     * @param position the position in arrival order, must be less than count of ammo.
+     * @param timeout the time to wait, or negative to wait without time limit.
+     * @param unit
+     * @return
+     * @throws InterruptedException
+     * @throws TimeoutException if time elapsed before ammo at given position arrived.
+     */
+    public ChargeWrapper<E> awaitArrival( final int position, final long timeout, final TimeUnit unit )
+        throws InterruptedException, TimeoutException
+    {
+        Preconditions.checkElementIndex( position, ammunition.size() );
+
+        @SuppressWarnings( "unchecked" )
+        ChargeArrivals<E> arrivals = ARRIVALS.get( this );
+
+        if ( arrivals == null )
+        {
+            final ChargeArrivals<E> created = new ChargeArrivals<E>( ammunition.size() );
+
+            if ( ARRIVALS.compareAndSet( this, null, created ) )
+            {
+                // the ones arrived before, the ones arriving meanwhile might be recorded twice
+                for ( ChargeWrapper<E> wrapper : ammunition )
+                {
+                    final int arrivalPosition = wrapper.getArrivalPosition();
+
+                    if ( arrivalPosition >= 0 )
+                    {
+                        created.arrived( arrivalPosition, wrapper );
+                    }
+                }
+            }
+
+            arrivals = this.arrivals;
+        }
+
+        return arrivals.await( position, timeout, unit );
+    }
+
+    /**
+     * Returns the state the strategy attached to this charge, or null if it did not attach any (yet). Strategies are
+     * usually shared singletons, hence any per-charge state they need should live here, instead in some shared
+     * structure of the strategy.
+     * 
+     * @return
+     */
+    public Object getStrategyState()
+    {
+        return strategyState;
+    }
+
+    /**
+     * Atomically attaches the state of the strategy to this charge, if current state is the expected one.
+     * 
+     * @param expect
+     * @param update
+     * @return true if successful.
+     */
+    public boolean compareAndSetStrategyState( final Object expect, final Object update )
+    {
+        return STRATEGY_STATE.compareAndSet( this, expect, update );
+    }
+
+    /**
+     * Returns the metrics recorder of this charge, or null if it is not subject of metrics.
+     * 
+     * @return
+     */
+    ChargeMetrics.Recorder getRecorder()
+    {
+        final ChargeFeatures features = this.features;
+
+        return features != null ? features.recorder : null;
+    }
+
     void setDone( final ChargeWrapper<E> wrapper )
     {
         strategy.setDone( this, wrapper );
+
+        // counted only after strategy is done with it, so a strategy seeing all completed sees all their outcomes
+        final int position = COMPLETED.getAndIncrement( this );
+
+        // position first, whoever creates the arrivals after this sees it
+        wrapper.setArrivalPosition( position );
+
+        final ChargeArrivals<E> arrivals = this.arrivals;
+
+        if ( arrivals != null )
+        {
+            arrivals.arrived( position, wrapper );
+        }
+    }
+
+    /**
+     * Launches the ammo of this charge on execution. By default, all the ammo is launched at once, or if subject of
+     * admission control, as many as the slots it was admitted with, and the rest one by one as launched ones arrive.
+     * 
+     * @throws RejectedExecutionException if the executor rejected the ammo.
+     */
+    protected void launchAmmo()
+        throws RejectedExecutionException
+    {
+        final ChargeAdmission admission = this.admission;
+
+        if ( admission == null )
+        {
+            launchAll();
+        }
+        else
+        {
+            final int slots = admission.getSlots();
+
+            for ( int i = 0; i < slots; i++ )
+            {
+                try
+                {
+                    launchNext( true );
+                }
+                catch ( RejectedExecutionException e )
+                {
+                    // the rejected ammo keeps it's slot until it arrives, the ones after it never got used
+                    admission.release( slots - i - 1 );
+
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Submits the given ammo to the executor this charge is executed with, unless it is launched or abandoned already
+     * (if charge was decided meanwhile). Ammo having it's outcome cached is executed right away instead.
+     * 
+     * @param ammo
+     * @return true if ammo was submitted (or executed).
+     * @throws RejectedExecutionException if the executor rejected the ammo.
+     */
+    protected boolean launch( final ChargeWrapper<E> ammo )
+        throws RejectedExecutionException
+    {
+        if ( ammo.launch() )
+        {
+            final ChargeFeatures features = this.features;
+
+            if ( features != null && features.recorder != null )
+            {
+                ammo.markEnqueued();
+            }
+
+            if ( features != null && features.resultCache != null && ammo.lookupCached() )
+            {
+                executeCached( ammo );
+
+                return true;
+            }
+
+            final long deadline = ammo.startTimeout();
+
+            submit( ammo );
+
+            if ( deadline != 0 )
+            {
+                armTimeout( deadline );
+            }
+
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Submits all the ammo not launched or abandoned yet to the executor this charge is executed with, in one batch if
+     * executor supports that.
+     * 
+     * @throws RejectedExecutionException if the executor rejected the ammo.
+     */
+    protected void launchAll()
+        throws RejectedExecutionException
+    {
+        if ( !( executor instanceof BatchCallableExecutor ) )
+        {
+            // one by one, so the submitted ones have their futures even if a later one is rejected
+            for ( ChargeWrapper<E> ammo : ammunition )
+            {
+                launch( ammo );
+            }
+
+            return;
+        }
+
+        final ArrayList<ChargeWrapper<E>> batch = new ArrayList<ChargeWrapper<E>>( ammunition.size() );
+
+        List<ChargeWrapper<E>> cached = Collections.emptyList();
+
+        long earliestDeadline = 0;
+
+        final ChargeFeatures features = this.features;
+
+        for ( ChargeWrapper<E> ammo : ammunition )
+        {
+            if ( ammo.launch() )
+            {
+                if ( features != null && features.recorder != null )
+                {
+                    ammo.markEnqueued();
+                }
+
+                if ( features != null && features.resultCache != null && ammo.lookupCached() )
+                {
+                    if ( cached.isEmpty() )
+                    {
+                        cached = new ArrayList<ChargeWrapper<E>>();
+                    }
+
+                    cached.add( ammo );
+                }
+                else
+                {
+                    final long deadline = ammo.startTimeout();
+
+                    if ( deadline != 0 && ( earliestDeadline == 0 || deadline - earliestDeadline < 0 ) )
+                    {
+                        earliestDeadline = deadline;
+                    }
+
+                    batch.add( ammo );
+                }
+            }
+        }
+
+        if ( !batch.isEmpty() )
+        {
+            final List<Future<E>> futures = ( (BatchCallableExecutor) executor ).submitAll( batch );
+
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                batch.get( i ).setFuture( futures.get( i ) );
+            }
+
+            if ( earliestDeadline != 0 )
+            {
+                armTimeout( earliestDeadline );
+            }
+        }
+
+        // after the batch, so the ammo needing the executor is on it's way meanwhile
+        for ( ChargeWrapper<E> ammo : cached )
+        {
+            executeCached( ammo );
+        }
+    }
+
+    /**
+     * Submits the given launched ammo to the executor this charge is executed with. If the executor is an
+     * {@link Executor} too, the ammo is executed as is, being it's own future, otherwise the executor wraps it into a
+     * future of it's own.
+     * 
+     * @param ammo
+     * @throws RejectedExecutionException if the executor rejected the ammo.
+     */
+    protected void submit( final ChargeWrapper<E> ammo )
+        throws RejectedExecutionException
+    {
+        final CallableExecutor executor = this.executor;
+
+        if ( executor instanceof Executor )
+        {
+            // set before it is executed, so it might be cancelled once it runs
+            ammo.setFuture( ammo );
+
+            try
+            {
+                ( (Executor) executor ).execute( ammo );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                ammo.clearFuture();
+
+                throw e;
+            }
+        }
+        else
+        {
+            ammo.setFuture( executor.submit( ammo ) );
+        }
+    }
+
+    /**
+     * Runs the given task by the executor this charge is executed with, keeping it off the thread of the timer shared
+     * by charges, that must not run anything but short non-blocking tasks. If the executor rejects the task, it is run
+     * by the calling thread.
+     * 
+     * @param task
+     */
+    protected void dispatch( final Runnable task )
+    {
+        final CallableExecutor executor = this.executor;
+
+        try
+        {
+            if ( executor instanceof Executor )
+            {
+                ( (Executor) executor ).execute( task );
+            }
+            else
+            {
+                executor.submit( Executors.callable( task ) );
+            }
+        }
+        catch ( RejectedExecutionException e )
+        {
+            task.run();
+        }
+    }
+
+    /**
+     * Executes the launched ammo having it's outcome cached in the calling thread, as an executor would do.
+     * 
+     * @param ammo
+     */
+    protected void executeCached( final ChargeWrapper<E> ammo )
+    {
+        ammo.setFuture( ammo );
+
+        // never throws, the outcome is recorded
+        ammo.run();
+    }
+
+    /**
+     * Makes sure the timeouts of ammo are checked at given deadline (or sooner), by the timer shared by charges. At
+     * most one timer task per charge is pending, for the earliest deadline known, and it is cancelled once the charge
+     * is done (see {@link ChargeTimeouts}).
+     * 
+     * @param deadline
+     */
+    protected void armTimeout( final long deadline )
+    {
+        @SuppressWarnings( "unchecked" )
+        ChargeTimeouts<E> timeouts = TIMEOUTS.get( this );
+
+        if ( timeouts == null )
+        {
+            TIMEOUTS.compareAndSet( this, null, new ChargeTimeouts<E>( this ) );
+
+            timeouts = this.timeouts;
+        }
+
+        timeouts.arm( deadline );
+    }
+
+    /**
+     * Cancels the pending timer task of this charge, if any, so the charge is not kept reachable by the timer.
+     */
+    protected void cancelTimeouts()
+    {
+        final ChargeTimeouts<E> timeouts = this.timeouts;
+
+        if ( timeouts != null )
+        {
+            timeouts.cancel();
+        }
+    }
+
+    /**
+     * Submits the given ammo being retried to the executor again, or abandons it, if charge is done meanwhile. If the
+     * executor rejects it, it arrives as failed with the rejection.
+     * 
+     * @param ammo
+     */
+    void relaunch( final ChargeWrapper<E> ammo )
+    {
+        if ( ammo.isDone() )
+        {
+            // timed out meanwhile
+            return;
+        }
+        else if ( isDone() )
+        {
+            ammo.abandon();
+
+            return;
+        }
+
+        try
+        {
+            if ( getRecorder() != null )
+            {
+                ammo.markEnqueued();
+            }
+
+            submit( ammo );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            if ( ammo.reject( e ) )
+            {
+                launchedArrived( ammo );
+            }
+        }
+    }
+
+    /**
+     * Invoked when a launched ammo arrived, passes on it's admission slot, if charge is subject of admission control.
+     * 
+     * @param wrapper
+     */
+    void launchedArrived( final ChargeWrapper<E> wrapper )
+    {
+        if ( admission != null )
+        {
+            launchNext( false );
+        }
+    }
+
+    /**
+     * Launches the next ammo not launched yet in a slot of admission control, or releases the slot if there is none
+     * left. Once charge is done, the ones not launched are abandoned instead.
+     * 
+     * @param rejectToCaller true to throw the rejection of executor, false to fail the rejected ammo with it.
+     * @throws RejectedExecutionException if the executor rejected the ammo, and the rejection goes to caller.
+     */
+    protected void launchNext( final boolean rejectToCaller )
+        throws RejectedExecutionException
+    {
+        final ChargeAdmission admission = this.admission;
+
+        final int size = ammunition.size();
+
+        for ( int index = admission.nextIndex(); index < size; index = admission.nextIndex() )
+        {
+            final ChargeWrapper<E> ammo = ammunition.get( index );
+
+            if ( isDone() )
+            {
+                ammo.abandon();
+
+                continue;
+            }
+
+            try
+            {
+                if ( launch( ammo ) )
+                {
+                    return;
+                }
+            }
+            catch ( RejectedExecutionException e )
+            {
+                if ( rejectToCaller )
+                {
+                    throw e;
+                }
+
+                if ( !ammo.reject( e ) )
+                {
+                    // abandoned meanwhile, and abandoning passed the slot on
+                    return;
+                }
+            }
+        }
+
+        admission.release( 1 );
+    }
+
+    /**
+     * Executes the ammo of this charge in the calling thread, that was submitted to the executor but was not started by
+     * it yet, until this charge is done, there is no such ammo left, or given time elapsed. Ammo not submitted (yet) is
+     * never executed, it is up to the charge when to launch it. Ammo is claimed by the same means as the executor
+     * does, so whoever comes first executes it, and the other one bails out.
+     * 
+     * @param nanos the time to help at most.
+     * @throws InterruptedException
+     */
+    protected void help( final long nanos )
+        throws InterruptedException
+    {
+        final long start = System.nanoTime();
+
+        for ( ChargeWrapper<E> wrapper : ammunition )
+        {
+            if ( isDone() || System.nanoTime() - start >= nanos )
+            {
+                return;
+            }
+
+            if ( Thread.interrupted() )
+            {
+                throw new InterruptedException();
+            }
+
+            // ammo waiting for it's retry has no future either
+            if ( wrapper.getFuture() == null || wrapper.isStarted() )
+            {
+                continue;
+            }
+
+            try
+            {
+                wrapper.call();
+            }
+            catch ( Throwable e )
+            {
+                // if we did run it, the outcome is recorded and the strategy deals with it, otherwise it was claimed
+            }
+        }
+    }
+
+    /**
+     * Applies the loser policy to ammo not finished yet. The waiters are already released at this point.
+     */
+    protected void reclaimLosers()
+    {
+        final LoserPolicy policy = loserPolicy;
+
+        if ( LoserPolicy.NONE == policy )
+        {
+            return;
+        }
+
+        RECLAIMED.addAndGet( this, cancelUnfinished( LoserPolicy.CANCEL_RUNNING == policy ) );
+    }
+
+    /**
+     * Cancels the ammo not finished yet: the ones not started are abandoned (and they arrive as bailed out), and the
+     * running ones are interrupted if allowed.
+     * 
+     * @param mayInterruptIfRunning
+     * @return the count of cancelled ammo.
+     */
+    protected int cancelUnfinished( final boolean mayInterruptIfRunning )
+    {
+        int cancelled = 0;
+
+        for ( ChargeWrapper<E> wrapper : ammunition )
+        {
+            if ( wrapper.isDone() )
+            {
+                continue;
+            }
+
+            // future might be still null if we are being executed, those will be skipped by exec
+            final Future<E> future = wrapper.getFuture();
+
+            if ( wrapper.abandon() )
+            {
+                if ( future != null )
+                {
+                    // just remove it from executor queue if it supports that
+                    future.cancel( false );
+                }
+
+                cancelled++;
+            }
+            else if ( mayInterruptIfRunning && future != null && future.cancel( true ) )
+            {
+                cancelled++;
+            }
+        }
+
+        return cancelled;
+    }
+
+    private void fireCancelled()
+    {
+        final ChargeListener listener = getListener();
+
+        if ( listener != null )
+        {
+            listener.chargeCancelled( this );
+        }
+    }
+
+    /**
+     * Fires the one-shot "done" signal of this charge, as it's strategy decided, releasing the waiters. Only the first
+     * invocation of this method or {@link #signalCancelled()} has any effect, and the one that did fire the signal must
+     * {@link #runListeners()} once it dealt with the ammo not finished yet.
+     * 
+     * @return true if this invocation did fire the signal.
+     */
+    protected boolean signalDone()
+    {
+        return signal( ChargeCompletion.DECIDED );
+    }
+
+    /**
+     * Fires the one-shot "done" signal of this charge, as it was cancelled or timed out before it's strategy decided,
+     * releasing the waiters. Only the first invocation of this method or {@link #signalDone()} has any effect, and the
+     * one that did fire the signal must {@link #runListeners()} once it dealt with the ammo not finished yet.
+     * 
+     * @return true if this invocation did fire the signal.
+     */
+    protected boolean signalCancelled()
+    {
+        return signal( ChargeCompletion.CANCELLED );
+    }
+
+    /**
+     * Runs the listeners registered by {@link #addListener(Runnable, Executor)}, once the "done" signal was fired.
+     */
+    protected void runListeners()
+    {
+        completion.runListeners();
+    }
+
+    /**
+     * Returns the optional features of this charge, creating them once the first one is set. Meant to be invoked by
+     * the one setting up the charge, before it is executed.
+     * 
+     * @return
+     */
+    private ChargeFeatures features()
+    {
+        if ( features == null )
+        {
+            features = new ChargeFeatures();
+        }
+
+        return features;
+    }
+
+    private boolean signal( final int how )
+    {
+        if ( completion.mark( how ) )
+        {
+            cancelTimeouts();
+
+            completion.releaseWaiters();
+
+            return true;
+        }
+        else
+        {
+            return false;
+        }
     }
 }
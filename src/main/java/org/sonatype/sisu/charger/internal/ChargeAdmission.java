@@ -0,0 +1,56 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.sonatype.sisu.charger.AdmissionControl;
+
+/**
+ * The admission of an executed charge: the admission control that admitted it, the count of slots it was admitted
+ * with, and the cursor of ammo to launch next in a slot passed on. A charge creates it only once it is admitted, if it
+ * is subject of admission control.
+ *
+ * @author cstamas
+ */
+final class ChargeAdmission
+{
+    private static final AtomicIntegerFieldUpdater<ChargeAdmission> CURSOR =
+        AtomicIntegerFieldUpdater.newUpdater( ChargeAdmission.class, "cursor" );
+
+    private final AdmissionControl admissionControl;
+
+    private final int slots;
+
+    private volatile int cursor;
+
+    ChargeAdmission( final AdmissionControl admissionControl, final int slots )
+    {
+        this.admissionControl = admissionControl;
+        this.slots = slots;
+    }
+
+    int getSlots()
+    {
+        return slots;
+    }
+
+    /**
+     * Claims the index of ammo to launch next. Every index is claimed once, and the ones claimed past the last ammo
+     * mean there is none left.
+     *
+     * @return
+     */
+    int nextIndex()
+    {
+        return CURSOR.getAndIncrement( this );
+    }
+
+    /**
+     * Releases given count of slots back to the admission control.
+     *
+     * @param count
+     */
+    void release( final int count )
+    {
+        admissionControl.release( count );
+    }
+}
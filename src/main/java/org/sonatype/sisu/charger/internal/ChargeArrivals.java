@@ -0,0 +1,106 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ammo of a charge in order of arrival, for the streams of it's payloads. A charge creates it only once somebody
+ * awaits an arrival, and fills in the ammo arrived before by their arrival positions (see
+ * {@link ChargeWrapper#getArrivalPosition()}).
+ *
+ * @author cstamas
+ * @param <E>
+ */
+final class ChargeArrivals<E>
+{
+    private final AtomicReferenceArray<ChargeWrapper<E>> arrivals;
+
+    private final ReentrantLock lock;
+
+    private final Condition arrived;
+
+    ChargeArrivals( final int ammoCount )
+    {
+        this.arrivals = new AtomicReferenceArray<ChargeWrapper<E>>( ammoCount );
+
+        this.lock = new ReentrantLock();
+
+        this.arrived = lock.newCondition();
+    }
+
+    /**
+     * Records given ammo arrived at given position, and wakes up the ones waiting for it. Recording the same arrival
+     * twice is harmless.
+     *
+     * @param position
+     * @param wrapper
+     */
+    void arrived( final int position, final ChargeWrapper<E> wrapper )
+    {
+        arrivals.set( position, wrapper );
+
+        lock.lock();
+
+        try
+        {
+            arrived.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the ammo that arrived at given position, blocking until it arrives, but at most for given time.
+     *
+     * @param position
+     * @param timeout the time to wait, or negative to wait without time limit.
+     * @param unit
+     * @return
+     * @throws InterruptedException
+     * @throws TimeoutException if time elapsed before ammo at given position arrived.
+     */
+    ChargeWrapper<E> await( final int position, final long timeout, final TimeUnit unit )
+        throws InterruptedException, TimeoutException
+    {
+        ChargeWrapper<E> result = arrivals.get( position );
+
+        if ( result != null )
+        {
+            return result;
+        }
+
+        long nanos = unit.toNanos( timeout );
+
+        lock.lockInterruptibly();
+
+        try
+        {
+            while ( ( result = arrivals.get( position ) ) == null )
+            {
+                if ( timeout < 0 )
+                {
+                    arrived.await();
+                }
+                else if ( nanos > 0 )
+                {
+                    nanos = arrived.awaitNanos( nanos );
+                }
+                else
+                {
+                    throw new TimeoutException( "Ammo at arrival position " + position + " did not arrive in time." );
+                }
+            }
+
+            return result;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
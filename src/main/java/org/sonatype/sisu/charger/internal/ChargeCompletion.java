@@ -0,0 +1,98 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import com.google.common.util.concurrent.ExecutionList;
+
+/**
+ * The one-shot "done" signal of a charge: how the charge got done, the waiters blocked until then, and the listeners
+ * run once it is. The signal is marked first, the waiters are released next, and the listeners run last, so the charge
+ * might do it's own cleanup in between (ie. reclaim the losers before a slow listener runs).
+ *
+ * @author cstamas
+ */
+final class ChargeCompletion
+{
+    private static final AtomicIntegerFieldUpdater<ChargeCompletion> STATE =
+        AtomicIntegerFieldUpdater.newUpdater( ChargeCompletion.class, "state" );
+
+    /**
+     * Value of {@link #state} once strategy decided the charge is done.
+     */
+    static final int DECIDED = 1;
+
+    /**
+     * Value of {@link #state} once the charge was cancelled or timed out before strategy decided.
+     */
+    static final int CANCELLED = 2;
+
+    private volatile int state;
+
+    private final CountDownLatch waiters;
+
+    private final ExecutionList listeners;
+
+    ChargeCompletion()
+    {
+        this.waiters = new CountDownLatch( 1 );
+
+        this.listeners = new ExecutionList();
+    }
+
+    boolean isDone()
+    {
+        return state != 0;
+    }
+
+    boolean isCancelled()
+    {
+        return state == CANCELLED;
+    }
+
+    /**
+     * Marks the charge done in given way, unless it is marked already.
+     *
+     * @param how {@link #DECIDED} or {@link #CANCELLED}.
+     * @return true if this invocation did mark it.
+     */
+    boolean mark( final int how )
+    {
+        return STATE.compareAndSet( this, 0, how );
+    }
+
+    /**
+     * Releases the waiters. Invoked once, by the one that marked the charge done.
+     */
+    void releaseWaiters()
+    {
+        waiters.countDown();
+    }
+
+    /**
+     * Runs the listeners. Invoked once, by the one that marked the charge done, after it released the waiters.
+     */
+    void runListeners()
+    {
+        listeners.run();
+    }
+
+    void await()
+        throws InterruptedException
+    {
+        waiters.await();
+    }
+
+    boolean await( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        return waiters.await( timeout, unit );
+    }
+
+    void addListener( final Runnable listener, final Executor executor )
+    {
+        listeners.add( listener, executor );
+    }
+}
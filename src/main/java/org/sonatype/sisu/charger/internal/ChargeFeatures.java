@@ -0,0 +1,41 @@
+package org.sonatype.sisu.charger.internal;
+
+import org.sonatype.sisu.charger.AdmissionControl;
+import org.sonatype.sisu.charger.ChargeListener;
+import org.sonatype.sisu.charger.ChargeMetrics;
+import org.sonatype.sisu.charger.DeadlinePolicy;
+import org.sonatype.sisu.charger.ResultCache;
+import org.sonatype.sisu.charger.RetryPolicy;
+import org.sonatype.sisu.charger.SingleFlight;
+
+/**
+ * The optional features of a charge, the ones a plain charge lives without. A charge creates it only once one of them
+ * is set to other than it's default. They are set before the charge is executed, and the ammo sees them published by
+ * it's submission to the executor, except the metrics recorder, that is set by the charge once it is executed.
+ *
+ * @author cstamas
+ */
+final class ChargeFeatures
+{
+    String name;
+
+    DeadlinePolicy deadlinePolicy = DeadlinePolicy.FAIL;
+
+    AdmissionControl admissionControl;
+
+    ChargeMetrics metrics;
+
+    ChargeListener listener;
+
+    SingleFlight singleFlight;
+
+    ResultCache resultCache;
+
+    RetryPolicy retryPolicy;
+
+    int priority;
+
+    ContextSnapshot context = ContextSnapshot.EMPTY;
+
+    volatile ChargeMetrics.Recorder recorder;
+}
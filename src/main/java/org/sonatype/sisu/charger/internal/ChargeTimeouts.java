@@ -0,0 +1,201 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The timeouts of the ammo of a charge, fired by the timer shared by charges. At most one timer task per charge is
+ * pending, for the earliest deadline known, and it is cancelled once the charge is done. A charge creates it only when
+ * it launches it's first ammo having a time budget.
+ *
+ * @author cstamas
+ * @param <E>
+ */
+final class ChargeTimeouts<E>
+{
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<ChargeTimeouts, ChargeTimeouts.Sweep> SWEEP =
+        AtomicReferenceFieldUpdater.newUpdater( ChargeTimeouts.class, ChargeTimeouts.Sweep.class, "sweep" );
+
+    /**
+     * Timer task timing out the ammo at given deadline, the earliest one known when it was scheduled.
+     */
+    private final class Sweep
+        implements Runnable
+    {
+        private final long deadline;
+
+        private volatile ScheduledFuture<?> future;
+
+        private volatile boolean cancelled;
+
+        private Sweep( final long deadline )
+        {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run()
+        {
+            expire( this );
+        }
+
+        private void schedule()
+        {
+            future = ChargeTimer.schedule( this, deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+
+            if ( cancelled )
+            {
+                future.cancel( false );
+            }
+        }
+
+        private void cancel()
+        {
+            cancelled = true;
+
+            final ScheduledFuture<?> future = this.future;
+
+            if ( future != null )
+            {
+                future.cancel( false );
+            }
+        }
+    }
+
+    private final Charge<E> charge;
+
+    private volatile Sweep sweep;
+
+    ChargeTimeouts( final Charge<E> charge )
+    {
+        this.charge = charge;
+    }
+
+    /**
+     * Makes sure the timeouts of ammo are checked at given deadline (or sooner).
+     *
+     * @param deadline
+     */
+    void arm( final long deadline )
+    {
+        while ( true )
+        {
+            @SuppressWarnings( "unchecked" )
+            final Sweep current = SWEEP.get( this );
+
+            if ( current != null && current.deadline - deadline <= 0 )
+            {
+                return;
+            }
+
+            final Sweep next = new Sweep( deadline );
+
+            if ( SWEEP.compareAndSet( this, current, next ) )
+            {
+                next.schedule();
+
+                if ( current != null )
+                {
+                    current.cancel();
+                }
+
+                if ( charge.isDone() )
+                {
+                    cancel();
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cancels the pending timer task, if any, so the charge is not kept reachable by the timer.
+     */
+    void cancel()
+    {
+        @SuppressWarnings( "unchecked" )
+        final Sweep sweep = SWEEP.getAndSet( this, null );
+
+        if ( sweep != null )
+        {
+            sweep.cancel();
+        }
+    }
+
+    /**
+     * Times out the launched ammo not arrived by it's deadline, and arms the timer for the earliest deadline left. The
+     * timed out ammo is done right away, but their arrivals (that might decide the charge, launch more ammo and run
+     * the listeners) are reported by the executor of the charge, not by the timer.
+     *
+     * @param sweep the timer task being run.
+     */
+    private void expire( final Sweep sweep )
+    {
+        SWEEP.compareAndSet( this, sweep, null );
+
+        final long now = System.nanoTime();
+
+        long earliestDeadline = 0;
+
+        List<ChargeWrapper<E>> expired = null;
+
+        for ( ChargeWrapper<E> ammo : charge.getAmmoFutures() )
+        {
+            if ( charge.isDone() )
+            {
+                break;
+            }
+
+            final long deadline = ammo.getDeadline();
+
+            if ( deadline == 0 || ammo.isDone() )
+            {
+                continue;
+            }
+
+            if ( now - deadline >= 0 )
+            {
+                if ( ammo.timeout() )
+                {
+                    if ( expired == null )
+                    {
+                        expired = new ArrayList<ChargeWrapper<E>>( 2 );
+                    }
+
+                    expired.add( ammo );
+                }
+            }
+            else if ( earliestDeadline == 0 || deadline - earliestDeadline < 0 )
+            {
+                earliestDeadline = deadline;
+            }
+        }
+
+        if ( expired != null )
+        {
+            final List<ChargeWrapper<E>> arrived = expired;
+
+            charge.dispatch( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for ( ChargeWrapper<E> ammo : arrived )
+                    {
+                        ammo.timeoutArrived();
+                    }
+                }
+            } );
+        }
+
+        if ( earliestDeadline != 0 && !charge.isDone() )
+        {
+            arm( earliestDeadline );
+        }
+    }
+}
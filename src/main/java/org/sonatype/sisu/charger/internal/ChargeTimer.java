@@ -0,0 +1,56 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The timer shared by all charges needing to do something later (ie. hedging). It is backed by one daemon thread,
+ * created on first use, hence the tasks scheduled here must be short and must not block. The cancelled tasks are purged
+ * periodically.
+ * 
+ * @author cstamas
+ */
+public final class ChargeTimer
+{
+    private static class Holder
+    {
+        static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor( 1,
+            new ThreadFactoryBuilder().setNameFormat( "charge-timer-%d" ).setDaemon( true ).build() );
+
+        static
+        {
+            // cancelled tasks stay queued until their delay elapses (Java 6 cannot remove them on cancel), and keep
+            // reachable whatever they refer to
+            TIMER.scheduleWithFixedDelay( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    TIMER.purge();
+                }
+            }, PURGE_PERIOD_MILLIS, PURGE_PERIOD_MILLIS, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    private static final long PURGE_PERIOD_MILLIS = 1000;
+
+    private ChargeTimer()
+    {
+    }
+
+    /**
+     * Schedules a short, non blocking task for execution after given delay.
+     * 
+     * @param task
+     * @param delay
+     * @param unit
+     * @return
+     */
+    public static ScheduledFuture<?> schedule( final Runnable task, final long delay, final TimeUnit unit )
+    {
+        return Holder.TIMER.schedule( task, delay, unit );
+    }
+}
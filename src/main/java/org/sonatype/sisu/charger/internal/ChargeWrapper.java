@@ -1,36 +1,201 @@
 package org.sonatype.sisu.charger.internal;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+import org.sonatype.sisu.charger.ChargeListener;
+import org.sonatype.sisu.charger.ChargeMetrics;
 import org.sonatype.sisu.charger.ExceptionHandler;
+import org.sonatype.sisu.charger.KeyedCallable;
+import org.sonatype.sisu.charger.PrioritizedCallable;
+import org.sonatype.sisu.charger.ResultCache;
+import org.sonatype.sisu.charger.RetryPolicy;
+import org.sonatype.sisu.charger.RetryingExceptionHandler;
+import org.sonatype.sisu.charger.SingleFlight;
+import org.sonatype.sisu.charger.UpstreamCallable;
+import org.sonatype.sisu.charger.VerdictCallable;
 
 import com.google.common.base.Preconditions;
 
 /**
  * Charge wrapper that wraps all the Callables being submitted into a Charge. This also holds reference to
  * ExceptionHandler if any, and delegates to it, meaning, every callable has it's own ExceptionHandler too.
+ * <p>
+ * Every wrapper "arrives" exactly once: either it's callable was executed (or bailed out), or the charge abandoned it
+ * before it was started, in which case it is recorded as bailed out.
+ * <p>
+ * A wrapper is a {@link RunnableFuture} of itself too, so charges executed on executors that are
+ * {@link java.util.concurrent.Executor}s as well hand it over as is, with no future allocated per ammo by the executor.
+ * As a future, it is done once it did arrive: cancelling it while it runs interrupts it, but it is not done before it
+ * actually bails out. No monitor is held on the way, not even by the threads waiting for it as a future (they would
+ * pin virtual threads to their carriers).
  * 
  * @author cstamas
  * @param <E>
  */
 public class ChargeWrapper<E>
-    implements Callable<E>, ExceptionHandler
+    implements UpstreamCallable<E>, PrioritizedCallable<E>, VerdictCallable<E>, ExceptionHandler, RunnableFuture<E>
 {
+    private static final int NEW = 0;
+
+    private static final int LAUNCHED = 1;
+
+    private static final int RUNNING = 2;
+
+    private static final int COMPLETING = 3;
+
+    private static final int DONE = 4;
+
+    private static final int NOT_INTERRUPTED = 0;
+
+    private static final int INTERRUPTING = 1;
+
+    private static final int INTERRUPTED = 2;
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicIntegerFieldUpdater<ChargeWrapper> STATE =
+        AtomicIntegerFieldUpdater.newUpdater( ChargeWrapper.class, "state" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicIntegerFieldUpdater<ChargeWrapper> INTERRUPTION =
+        AtomicIntegerFieldUpdater.newUpdater( ChargeWrapper.class, "interruption" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<ChargeWrapper, Thread> RUNNER =
+        AtomicReferenceFieldUpdater.newUpdater( ChargeWrapper.class, Thread.class, "runner" );
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<ChargeWrapper, CountDownLatch> DONE_SIGNAL =
+        AtomicReferenceFieldUpdater.newUpdater( ChargeWrapper.class, CountDownLatch.class, "doneSignal" );
+
+    /**
+     * The time budget of a wrapper, and the deadline it times out at once launched. Created only for ammo having one.
+     */
+    private static final class TimeBudget
+    {
+        private final long nanos;
+
+        private volatile long deadline;
+
+        private TimeBudget( final long nanos )
+        {
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * The exception the ExceptionHandler was asked about last, and it's verdict.
+     */
+    private static final class Judgement
+    {
+        private final Exception exception;
+
+        private final boolean handled;
+
+        private Judgement( final Exception exception, final boolean handled )
+        {
+            this.exception = exception;
+            this.handled = handled;
+        }
+    }
+
+    /**
+     * The timestamps of a wrapper, recorded only if charge is subject of metrics or has listener.
+     */
+    private static final class Timings
+    {
+        private long enqueuedAt;
+
+        private long startedAt;
+
+        private long finishedAt;
+    }
+
     private final Charge<E> charge;
 
+    private final int index;
+
     private final Callable<? extends E> callable;
 
     private final ExceptionHandler exceptionHandler;
 
-    private Future<E> future;
+    private final String upstream;
+
+    private final TimeBudget budget;
+
+    private volatile Future<E> future;
+
+    private volatile int state;
+
+    // as a future: the thread running it, and the signal for the threads waiting for it, created if there are any
+
+    private volatile Thread runner;
+
+    private volatile int interruption;
+
+    private volatile boolean cancelled;
+
+    private volatile CountDownLatch doneSignal;
+
+    // published by state transitions
+
+    private int attempts;
 
-    public ChargeWrapper( final Charge<E> charge, final Callable<? extends E> callable,
+    private volatile E result;
+
+    private volatile Throwable failure;
+
+    private volatile Judgement judgement;
+
+    // the position of this wrapper in arrival order plus one, or zero if it did not arrive yet
+
+    private volatile int arrival;
+
+    // set by the thread launching the wrapper, before it executes the wrapper itself
+
+    private ResultCache.Entry cached;
+
+    // published by state transitions
+
+    private Timings timings;
+
+    public ChargeWrapper( final Charge<E> charge, final int index, final Callable<? extends E> callable,
                           final ExceptionHandler exceptionHandler )
     {
+        this( charge, index, callable, exceptionHandler, 0, null );
+    }
+
+    /**
+     * Creates a wrapper of ammo having it's own time budget: if it does not arrive within given time once launched, it
+     * arrives as failed with {@link TimeoutException}, and is cancelled.
+     * 
+     * @param charge
+     * @param index
+     * @param callable
+     * @param exceptionHandler
+     * @param timeoutNanos the time budget of ammo, or zero if it has none.
+     * @param upstream the name of upstream ammo talks to, or null if not known.
+     */
+    public ChargeWrapper( final Charge<E> charge, final int index, final Callable<? extends E> callable,
+                          final ExceptionHandler exceptionHandler, final long timeoutNanos, final String upstream )
+    {
+        Preconditions.checkArgument( timeoutNanos >= 0, "Timeout must not be negative!" );
+
         this.charge = Preconditions.checkNotNull( charge );
+        this.index = index;
         this.callable = Preconditions.checkNotNull( callable );
         this.exceptionHandler = Preconditions.checkNotNull( exceptionHandler );
+        this.upstream = upstream;
+        this.budget = timeoutNanos > 0 ? new TimeBudget( timeoutNanos ) : null;
     }
 
     protected void setFuture( Future<E> future )
@@ -38,36 +203,948 @@ public class ChargeWrapper<E>
         this.future = Preconditions.checkNotNull( future );
     }
 
+    /**
+     * Forgets the future of this wrapper, once it was rejected or it's attempt failed, to be retried.
+     */
+    protected void clearFuture()
+    {
+        this.future = null;
+    }
+
     public Future<E> getFuture()
     {
         return future;
     }
 
+    /**
+     * Returns the index of this wrapper, it's position in the charge.
+     * 
+     * @return
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Returns the time budget of this wrapper in nanoseconds, or zero if it has none.
+     * 
+     * @return
+     */
+    public long getTimeoutNanos()
+    {
+        return budget != null ? budget.nanos : 0;
+    }
+
+    @Override
+    public String getUpstream()
+    {
+        return upstream;
+    }
+
+    /**
+     * Returns the priority of the charge this wrapper belongs to.
+     * 
+     * @return
+     */
+    @Override
+    public int getPriority()
+    {
+        return charge.getPriority();
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} this wrapper times out at, or zero if it has no time budget, or was not
+     * launched yet.
+     * 
+     * @return
+     */
+    public long getDeadline()
+    {
+        return budget != null ? budget.deadline : 0;
+    }
+
+    /**
+     * Returns the position of this wrapper in order of arrival, or -1 if it did not arrive yet.
+     * 
+     * @return
+     */
+    public int getArrivalPosition()
+    {
+        return arrival - 1;
+    }
+
+    /**
+     * Returns true if this wrapper was picked up for execution by executor, or was abandoned.
+     * 
+     * @return
+     */
+    public boolean isStarted()
+    {
+        return state >= RUNNING;
+    }
+
+    /**
+     * Returns true if this wrapper's callable was executed (or bailed out), and it's outcome is recorded.
+     * 
+     * @return
+     */
+    public boolean isDone()
+    {
+        return state == DONE;
+    }
+
+    /**
+     * Returns the payload delivered by the callable, or null if none (yet).
+     * 
+     * @return
+     */
+    public E getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Returns the throwable the callable failed with, or null if none (yet).
+     * 
+     * @return
+     */
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Returns the count of attempts to execute the callable made so far, more than one if it was retried.
+     * 
+     * @return
+     */
+    public int getAttempts()
+    {
+        return attempts;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} this wrapper was submitted to executor at, or zero if not recorded.
+     * 
+     * @return
+     */
+    public long getEnqueuedAt()
+    {
+        final Timings timings = this.timings;
+
+        return timings != null ? timings.enqueuedAt : 0;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} this wrapper was started at, or zero if not recorded.
+     * 
+     * @return
+     */
+    public long getStartedAt()
+    {
+        final Timings timings = this.timings;
+
+        return timings != null ? timings.startedAt : 0;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} this wrapper was finished at, or zero if not recorded.
+     * 
+     * @return
+     */
+    public long getFinishedAt()
+    {
+        final Timings timings = this.timings;
+
+        return timings != null ? timings.finishedAt : 0;
+    }
+
+    /**
+     * Returns the payload of this wrapper, or null if it bailed out, failed with an exception handled by it's
+     * ExceptionHandler, or did not arrive yet. Throws the exception it failed with if not handled. Never blocks.
+     * 
+     * @return
+     * @throws Exception
+     */
+    public E getOutcome()
+        throws Exception
+    {
+        if ( !isDone() )
+        {
+            return null;
+        }
+
+        final Throwable failure = this.failure;
+
+        if ( failure == null )
+        {
+            return result;
+        }
+        else if ( failure instanceof InterruptedException )
+        {
+            // we bailed out, just ignore it then
+            return null;
+        }
+        else if ( failure instanceof Exception )
+        {
+            if ( !handle( (Exception) failure ) )
+            {
+                throw (Exception) failure;
+            }
+
+            return null;
+        }
+        else
+        {
+            throw new RuntimeException( failure );
+        }
+    }
+
     @Override
     public E call()
         throws Exception
     {
+        return call( null );
+    }
+
+    /**
+     * Calls this wrapper, passing the verdict on it's outcome to given receiver, if any, right before it arrives (or
+     * the retry is scheduled).
+     */
+    @Override
+    public E call( final Verdict verdict )
+        throws Exception
+    {
+        final boolean launched;
+
+        if ( STATE.compareAndSet( this, LAUNCHED, RUNNING ) )
+        {
+            launched = true;
+        }
+        else if ( STATE.compareAndSet( this, NEW, RUNNING ) )
+        {
+            launched = false;
+        }
+        else
+        {
+            // abandoned, and it did arrive already
+            if ( verdict != null )
+            {
+                verdict.cancelled();
+            }
+
+            throw new BailOutException( "Ammo was abandoned before call() was made!" );
+        }
+
+        if ( attempts++ == 0 )
+        {
+            final RetryPolicy retryPolicy = charge.getRetryPolicy();
+
+            if ( retryPolicy != null )
+            {
+                retryPolicy.recordAttempt();
+            }
+        }
+
+        final ChargeMetrics.Recorder recorder = charge.getRecorder();
+
+        final ChargeListener listener = charge.getListener();
+
+        final Timings timings = recorder != null || listener != null ? timings() : null;
+
+        if ( timings != null )
+        {
+            timings.startedAt = System.nanoTime();
+
+            if ( recorder != null && timings.enqueuedAt != 0 )
+            {
+                recorder.recordQueueWait( timings.startedAt - timings.enqueuedAt );
+            }
+
+            if ( listener != null )
+            {
+                listener.ammoStarted( charge, this );
+            }
+        }
+
+        E payload = null;
+
+        Throwable thrown = null;
+
         try
         {
             if ( !charge.isDone() )
             {
-                return callable.call();
+                final ContextSnapshot context = charge.getContext();
+
+                final Object previous = context.bind();
+
+                try
+                {
+                    payload = invoke();
+                }
+                finally
+                {
+                    context.restore( previous );
+                }
+
+                return payload;
             }
             else
             {
-                throw new InterruptedException( "Charge itself was done before call() was made!" );
+                throw new BailOutException( "Charge itself was done before call() was made!" );
             }
         }
+        catch ( Exception e )
+        {
+            thrown = e;
+
+            throw e;
+        }
+        catch ( Error e )
+        {
+            thrown = e;
+
+            throw e;
+        }
         finally
         {
-            charge.setDone(this);
-            charge.checkIsDone( this );
+            if ( timings != null )
+            {
+                timings.finishedAt = System.nanoTime();
+
+                final long executionNanos = timings.finishedAt - timings.startedAt;
+
+                if ( recorder != null )
+                {
+                    recorder.recordExecution( executionNanos );
+                }
+
+                if ( listener != null )
+                {
+                    if ( thrown == null )
+                    {
+                        listener.ammoFinished( charge, this, executionNanos );
+                    }
+                    else
+                    {
+                        listener.ammoFailed( charge, this, thrown, executionNanos );
+                    }
+                }
+            }
+
+            final boolean retried = launched && thrown instanceof Exception && retry( (Exception) thrown );
+
+            if ( verdict != null )
+            {
+                passVerdict( verdict, thrown, retried );
+            }
+
+            if ( retried )
+            {
+                // it arrives with the retry
+            }
+            else if ( STATE.compareAndSet( this, RUNNING, COMPLETING ) )
+            {
+                // not timed out meanwhile, did not arrive yet
+                result = payload;
+                failure = thrown;
+                state = DONE;
+
+                releaseWaiters();
+
+                charge.setDone( this );
+                charge.checkIsDone( this );
+
+                if ( launched )
+                {
+                    charge.launchedArrived( this );
+                }
+            }
         }
     }
 
+    /**
+     * Asks the ExceptionHandler of this wrapper to handle given exception. The verdict on the exception this wrapper
+     * failed with is remembered, so the handler is asked once, however many parties (the result cache, the strategy,
+     * the executor) care about it.
+     */
     @Override
     public boolean handle( Exception ex )
     {
-        return exceptionHandler.handle( ex );
+        final Judgement judgement = this.judgement;
+
+        if ( judgement != null && judgement.exception == ex )
+        {
+            return judgement.handled;
+        }
+
+        final boolean handled = exceptionHandler.handle( ex );
+
+        this.judgement = new Judgement( ex, handled );
+
+        return handled;
+    }
+
+    /**
+     * Fails this wrapper with the rejection of an executor that queued it, and reports it's arrival.
+     */
+    @Override
+    public void rejected( final RejectedExecutionException e )
+    {
+        if ( reject( e ) )
+        {
+            rejectedArrived();
+        }
+    }
+
+    /**
+     * Executes this wrapper, as an executor would execute it's future. Never throws, the outcome is recorded.
+     */
+    @Override
+    public void run()
+    {
+        final Thread current = Thread.currentThread();
+
+        runner = current;
+
+        try
+        {
+            call();
+        }
+        catch ( Throwable e )
+        {
+            // if we did run it, the outcome is recorded and the strategy deals with it, otherwise it was claimed
+        }
+        finally
+        {
+            // a retry might run already, on some other thread
+            RUNNER.compareAndSet( this, current, null );
+
+            // an interrupt on it's way is delivered before it is cleared, not to leak to next task of the worker
+            while ( interruption == INTERRUPTING )
+            {
+                Thread.yield();
+            }
+
+            if ( interruption == INTERRUPTED )
+            {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Cancels this wrapper: if it was not started yet, it is abandoned, if it runs, it is interrupted if allowed (once
+     * at most).
+     * 
+     * @return true if wrapper was abandoned or interrupted.
+     */
+    @Override
+    public boolean cancel( final boolean mayInterruptIfRunning )
+    {
+        if ( abandon() )
+        {
+            cancelled = true;
+
+            return true;
+        }
+        else if ( mayInterruptIfRunning && runner != null
+            && INTERRUPTION.compareAndSet( this, NOT_INTERRUPTED, INTERRUPTING ) )
+        {
+            // read again, as the runner clears it before it looks at the interruption
+            final Thread runner = this.runner;
+
+            if ( runner != null )
+            {
+                cancelled = true;
+
+                runner.interrupt();
+            }
+
+            interruption = runner != null ? INTERRUPTED : NOT_INTERRUPTED;
+
+            return runner != null;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    @Override
+    public E get()
+        throws InterruptedException, ExecutionException
+    {
+        if ( !isDone() )
+        {
+            getDoneSignal().await();
+        }
+
+        return report();
+    }
+
+    @Override
+    public E get( final long timeout, final TimeUnit unit )
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if ( !isDone() && !getDoneSignal().await( timeout, unit ) )
+        {
+            throw new TimeoutException();
+        }
+
+        return report();
+    }
+
+    // ==
+
+    /**
+     * Looks up the outcome of the callable in the result cache of charge, if callable is keyed and charge has a cache.
+     * If found, it is delivered once this wrapper is executed, instead of invoking the callable.
+     * 
+     * @return true if outcome was found in cache.
+     */
+    protected boolean lookupCached()
+    {
+        final ResultCache resultCache = charge.getResultCache();
+
+        if ( resultCache != null && callable instanceof KeyedCallable )
+        {
+            cached = resultCache.get( ( (KeyedCallable<?>) callable ).getKey() );
+        }
+
+        return cached != null;
+    }
+
+    /**
+     * Invokes the callable, through the single flight of charge if callable is keyed and charge has one, and caches
+     * it's outcome if charge has a result cache.
+     * 
+     * @return
+     * @throws Exception
+     */
+    @SuppressWarnings( "unchecked" )
+    protected E invoke()
+        throws Exception
+    {
+        if ( cached != null )
+        {
+            return (E) cached.getPayload();
+        }
+
+        if ( !( callable instanceof KeyedCallable ) )
+        {
+            return callable.call();
+        }
+
+        final KeyedCallable<? extends E> keyedCallable = (KeyedCallable<? extends E>) callable;
+
+        final SingleFlight singleFlight = charge.getSingleFlight();
+
+        final ResultCache resultCache = charge.getResultCache();
+
+        if ( resultCache == null )
+        {
+            return singleFlight != null ? singleFlight.call( keyedCallable ) : keyedCallable.call();
+        }
+
+        try
+        {
+            final E e = singleFlight != null ? singleFlight.call( keyedCallable ) : keyedCallable.call();
+
+            resultCache.put( keyedCallable.getKey(), e );
+
+            return e;
+        }
+        catch ( Exception e )
+        {
+            // the verdict is remembered, the strategy does not ask the handler again
+            if ( !( e instanceof InterruptedException ) && handle( e ) )
+            {
+                resultCache.putNegative( keyedCallable.getKey(), e );
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Schedules a retry of this running wrapper failed with given exception, if it's ExceptionHandler deems it worth a
+     * retry, and the retry policy of charge permits it. The wrapper goes back to launched state, and is launched again
+     * by the charge once the backoff delay elapsed, as the timer shared by charges dispatches it to the executor.
+     * 
+     * @param e
+     * @return true if retry was scheduled, or the wrapper timed out meanwhile, false if it should arrive as failed.
+     */
+    protected boolean retry( final Exception e )
+    {
+        final RetryPolicy retryPolicy = charge.getRetryPolicy();
+
+        if ( retryPolicy == null || !( exceptionHandler instanceof RetryingExceptionHandler )
+            || e instanceof InterruptedException || charge.isDone() )
+        {
+            return false;
+        }
+
+        if ( !( (RetryingExceptionHandler) exceptionHandler ).retry( e, attempts ) || !retryPolicy.tryRetry() )
+        {
+            return false;
+        }
+
+        if ( !STATE.compareAndSet( this, RUNNING, LAUNCHED ) )
+        {
+            // timed out meanwhile, it did arrive already, and the retry is not made
+            retryPolicy.refundRetry();
+
+            return true;
+        }
+
+        // the failed attempt is over, the retry gets it's own future
+        clearFuture();
+
+        ChargeTimer.schedule( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // submitting might take a while, not on the timer
+                charge.dispatch( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        charge.relaunch( ChargeWrapper.this );
+                    }
+                } );
+            }
+        }, retryPolicy.getDelayNanos( attempts ), TimeUnit.NANOSECONDS );
+
+        return true;
+    }
+
+    /**
+     * Starts the time budget of this wrapper, if it has one.
+     * 
+     * @return the {@link System#nanoTime()} this wrapper times out at, or zero if it has no time budget.
+     */
+    protected long startTimeout()
+    {
+        if ( budget == null )
+        {
+            return 0;
+        }
+
+        // zero is reserved for "none"
+        final long deadline = ( System.nanoTime() + budget.nanos ) | 1L;
+
+        budget.deadline = deadline;
+
+        return deadline;
+    }
+
+    /**
+     * Times out this launched wrapper if it did not arrive yet: it is done as failed with {@link TimeoutException}
+     * right away, and it's execution is cancelled (interrupted if running). This is all cheap enough for the timer
+     * thread, the caller must then report the arrival to charge by {@link #timeoutArrived()}, preferably on some other
+     * thread.
+     * 
+     * @return true if wrapper was timed out, false if it did arrive already.
+     */
+    protected boolean timeout()
+    {
+        final boolean running;
+
+        if ( STATE.compareAndSet( this, LAUNCHED, COMPLETING ) )
+        {
+            running = false;
+        }
+        else if ( STATE.compareAndSet( this, RUNNING, COMPLETING ) )
+        {
+            running = true;
+        }
+        else
+        {
+            return false;
+        }
+
+        failure =
+            new TimeoutException( "Ammo did not arrive in " + TimeUnit.NANOSECONDS.toMillis( getTimeoutNanos() )
+                + " milliseconds!" );
+
+        // cancelled before it arrives, so whoever sees it arrived sees it cancelled too
+        final Future<E> future = this.future;
+
+        if ( future != null )
+        {
+            future.cancel( running );
+        }
+
+        state = DONE;
+
+        releaseWaiters();
+
+        return true;
+    }
+
+    /**
+     * Reports the arrival of this wrapper timed out by {@link #timeout()} to the charge, that might decide the charge
+     * and launch the next ammo in it's slot.
+     */
+    protected void timeoutArrived()
+    {
+        charge.setDone( this );
+        charge.checkIsDone( this );
+        charge.launchedArrived( this );
+    }
+
+    /**
+     * Records the time this wrapper is submitted to executor at.
+     */
+    protected void markEnqueued()
+    {
+        timings().enqueuedAt = System.nanoTime();
+    }
+
+    /**
+     * Records the position of this wrapper in order of arrival, once it arrived.
+     * 
+     * @param position
+     */
+    protected void setArrivalPosition( final int position )
+    {
+        arrival = position + 1;
+    }
+
+    /**
+     * Marks this wrapper as launched, about to be submitted to the executor.
+     * 
+     * @return true if wrapper was marked, false if it was already launched (or abandoned).
+     */
+    protected boolean launch()
+    {
+        return STATE.compareAndSet( this, NEW, LAUNCHED );
+    }
+
+    /**
+     * Abandons this wrapper if it was not started yet: it will never execute, and arrives immediately as bailed out.
+     * 
+     * @return true if wrapper was abandoned, false if it was already started (or abandoned).
+     */
+    protected boolean abandon()
+    {
+        if ( abandonUnlaunched() )
+        {
+            return true;
+        }
+        else if ( STATE.compareAndSet( this, LAUNCHED, DONE ) )
+        {
+            failure = new BailOutException( "Ammo was abandoned before call() was made!" );
+
+            releaseWaiters();
+
+            charge.setDone( this );
+            charge.launchedArrived( this );
+
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Abandons this wrapper if it was not launched yet: it will never execute, and arrives immediately as bailed out.
+     * Unlike {@link #abandon()}, the wrapper already submitted to the executor is left alone.
+     * 
+     * @return true if wrapper was abandoned, false if it was already launched (or abandoned).
+     */
+    protected boolean abandonUnlaunched()
+    {
+        if ( STATE.compareAndSet( this, NEW, DONE ) )
+        {
+            // whoever sees it done before failure is set sees no payload, that is a bail out too
+            failure = new BailOutException( "Ammo was abandoned before call() was made!" );
+
+            releaseWaiters();
+
+            charge.setDone( this );
+
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Fails this launched wrapper with the rejection of the executor, as if it's callable would throw it. Unlike
+     * abandoning it, the slot it was launched in is kept by the caller.
+     * 
+     * @param e
+     * @return true if wrapper was failed, false if it was already abandoned.
+     */
+    protected boolean reject( final RejectedExecutionException e )
+    {
+        if ( STATE.compareAndSet( this, LAUNCHED, DONE ) )
+        {
+            failure = e;
+
+            releaseWaiters();
+
+            charge.setDone( this );
+            charge.checkIsDone( this );
+
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Reports the arrival of this wrapper failed by {@link #reject(RejectedExecutionException)} by the executor once it
+     * was queued already, to the charge, passing on the slot it was launched in.
+     */
+    protected void rejectedArrived()
+    {
+        charge.launchedArrived( this );
+    }
+
+    /**
+     * The interruption a wrapper bails out with if it does not run at all. Being no failure, just a flow of control, it
+     * has no stack trace, that would cost more than the ammo itself, once a decided charge bails out it's ammo.
+     */
+    private static final class BailOutException
+        extends InterruptedException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private BailOutException( final String message )
+        {
+            super( message );
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace()
+        {
+            return this;
+        }
+    }
+
+    /**
+     * Passes the verdict on the outcome of a call of this wrapper. Exceptions are failures of the upstream, except the
+     * ones the handler handled (unless the call is retried, or it timed out meanwhile), and interruptions, unless the
+     * wrapper was interrupted for running out of time.
+     */
+    private void passVerdict( final Verdict verdict, final Throwable thrown, final boolean retried )
+    {
+        if ( thrown == null )
+        {
+            verdict.succeeded();
+        }
+        else if ( thrown instanceof InterruptedException )
+        {
+            if ( failure instanceof TimeoutException )
+            {
+                verdict.failed();
+            }
+            else
+            {
+                verdict.cancelled();
+            }
+        }
+        else if ( thrown instanceof Exception && !retried && state == RUNNING && handle( (Exception) thrown ) )
+        {
+            verdict.succeeded();
+        }
+        else
+        {
+            verdict.failed();
+        }
+    }
+
+    /**
+     * Returns the outcome of this done wrapper as a future would report it.
+     * 
+     * @return
+     * @throws ExecutionException
+     */
+    private E report()
+        throws ExecutionException
+    {
+        if ( cancelled )
+        {
+            throw new CancellationException( "Ammo was cancelled!" );
+        }
+
+        final Throwable failure = this.failure;
+
+        if ( failure == null )
+        {
+            return result;
+        }
+
+        throw new ExecutionException( failure );
+    }
+
+    /**
+     * Returns the signal of this wrapper arriving, creating it if needed, for a thread about to wait for it.
+     * 
+     * @return
+     */
+    private CountDownLatch getDoneSignal()
+    {
+        CountDownLatch signal = doneSignal;
+
+        if ( signal == null )
+        {
+            DONE_SIGNAL.compareAndSet( this, null, new CountDownLatch( 1 ) );
+
+            signal = doneSignal;
+        }
+
+        if ( isDone() )
+        {
+            // it did arrive before the signal was there to be released
+            signal.countDown();
+        }
+
+        return signal;
+    }
+
+    /**
+     * Returns the timestamps of this wrapper, creating them once the first one is recorded.
+     * 
+     * @return
+     */
+    private Timings timings()
+    {
+        if ( timings == null )
+        {
+            timings = new Timings();
+        }
+
+        return timings;
+    }
+
+    /**
+     * Wakes up the threads waiting for this wrapper as a future, if any, once it did arrive.
+     */
+    private void releaseWaiters()
+    {
+        final CountDownLatch signal = doneSignal;
+
+        if ( signal != null )
+        {
+            signal.countDown();
+        }
     }
 }
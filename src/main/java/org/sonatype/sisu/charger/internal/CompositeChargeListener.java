@@ -0,0 +1,131 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.Collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.sisu.charger.ChargeListener;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * ChargeListener dispatching the events to a snapshot of listeners, isolating the charge from their failures.
+ * 
+ * @author cstamas
+ */
+public class CompositeChargeListener
+    implements ChargeListener
+{
+    private static final Logger logger = LoggerFactory.getLogger( CompositeChargeListener.class );
+
+    private final ChargeListener[] listeners;
+
+    public CompositeChargeListener( final Collection<? extends ChargeListener> listeners )
+    {
+        this.listeners = Preconditions.checkNotNull( listeners ).toArray( new ChargeListener[listeners.size()] );
+    }
+
+    @Override
+    public void chargeSubmitted( final Charge<?> charge )
+    {
+        for ( ChargeListener listener : listeners )
+        {
+            try
+            {
+                listener.chargeSubmitted( charge );
+            }
+            catch ( RuntimeException e )
+            {
+                failed( listener, e );
+            }
+        }
+    }
+
+    @Override
+    public void ammoStarted( final Charge<?> charge, final ChargeWrapper<?> ammo )
+    {
+        for ( ChargeListener listener : listeners )
+        {
+            try
+            {
+                listener.ammoStarted( charge, ammo );
+            }
+            catch ( RuntimeException e )
+            {
+                failed( listener, e );
+            }
+        }
+    }
+
+    @Override
+    public void ammoFinished( final Charge<?> charge, final ChargeWrapper<?> ammo, final long executionNanos )
+    {
+        for ( ChargeListener listener : listeners )
+        {
+            try
+            {
+                listener.ammoFinished( charge, ammo, executionNanos );
+            }
+            catch ( RuntimeException e )
+            {
+                failed( listener, e );
+            }
+        }
+    }
+
+    @Override
+    public void ammoFailed( final Charge<?> charge, final ChargeWrapper<?> ammo, final Throwable failure,
+                            final long executionNanos )
+    {
+        for ( ChargeListener listener : listeners )
+        {
+            try
+            {
+                listener.ammoFailed( charge, ammo, failure, executionNanos );
+            }
+            catch ( RuntimeException e )
+            {
+                failed( listener, e );
+            }
+        }
+    }
+
+    @Override
+    public void chargeDecided( final Charge<?> charge )
+    {
+        for ( ChargeListener listener : listeners )
+        {
+            try
+            {
+                listener.chargeDecided( charge );
+            }
+            catch ( RuntimeException e )
+            {
+                failed( listener, e );
+            }
+        }
+    }
+
+    @Override
+    public void chargeCancelled( final Charge<?> charge )
+    {
+        for ( ChargeListener listener : listeners )
+        {
+            try
+            {
+                listener.chargeCancelled( charge );
+            }
+            catch ( RuntimeException e )
+            {
+                failed( listener, e );
+            }
+        }
+    }
+
+    // ==
+
+    private void failed( final ChargeListener listener, final RuntimeException e )
+    {
+        logger.warn( "ChargeListener " + listener + " failed, ignoring it.", e );
+    }
+}
@@ -0,0 +1,120 @@
+package org.sonatype.sisu.charger.internal;
+
+import org.sonatype.sisu.charger.ContextPropagator;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The contexts captured for a charge, and the propagators binding them around the executions of it's ammo. Snapshots
+ * are immutable, so charges having no context share the empty one.
+ * 
+ * @author cstamas
+ */
+final class ContextSnapshot
+{
+    static final ContextSnapshot EMPTY = new ContextSnapshot( new ContextPropagator<?>[0], new Object[0] );
+
+    private final ContextPropagator<?>[] propagators;
+
+    private final Object[] contexts;
+
+    private ContextSnapshot( final ContextPropagator<?>[] propagators, final Object[] contexts )
+    {
+        this.propagators = propagators;
+        this.contexts = contexts;
+    }
+
+    /**
+     * Returns a snapshot having given context too.
+     * 
+     * @param propagator
+     * @param context
+     * @return
+     */
+    <C> ContextSnapshot with( final ContextPropagator<C> propagator, final C context )
+    {
+        final int size = propagators.length;
+
+        final ContextPropagator<?>[] newPropagators = new ContextPropagator<?>[size + 1];
+
+        final Object[] newContexts = new Object[size + 1];
+
+        System.arraycopy( propagators, 0, newPropagators, 0, size );
+        System.arraycopy( contexts, 0, newContexts, 0, size );
+
+        newPropagators[size] = Preconditions.checkNotNull( propagator );
+        newContexts[size] = context;
+
+        return new ContextSnapshot( newPropagators, newContexts );
+    }
+
+    /**
+     * Binds the contexts to the calling thread, in order they were captured.
+     * 
+     * @return the state to restore: null if snapshot is empty, the state of the only propagator, or the array of
+     *         states of all the propagators (so a single context costs no array per execution).
+     */
+    @SuppressWarnings( "unchecked" )
+    Object bind()
+    {
+        final int size = propagators.length;
+
+        if ( size == 0 )
+        {
+            return null;
+        }
+        else if ( size == 1 )
+        {
+            return ( (ContextPropagator<Object>) propagators[0] ).bind( contexts[0] );
+        }
+
+        final Object[] previous = new Object[size];
+
+        int i = 0;
+
+        try
+        {
+            for ( ; i < size; i++ )
+            {
+                previous[i] = ( (ContextPropagator<Object>) propagators[i] ).bind( contexts[i] );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            restore( previous, i );
+
+            throw e;
+        }
+
+        return previous;
+    }
+
+    /**
+     * Restores the state of the calling thread, in reverse order the contexts were bound.
+     * 
+     * @param previous the state returned by {@link #bind()}.
+     */
+    void restore( final Object previous )
+    {
+        final int size = propagators.length;
+
+        if ( size == 1 )
+        {
+            propagators[0].restore( previous );
+        }
+        else if ( size > 1 )
+        {
+            restore( (Object[]) previous, size );
+        }
+    }
+
+    // ==
+
+    private void restore( final Object[] previous, final int count )
+    {
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            propagators[i].restore( previous[i] );
+        }
+    }
+}
@@ -1,30 +1,97 @@
 package org.sonatype.sisu.charger.internal;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.sonatype.sisu.charger.ChargeFuture;
+import org.sonatype.sisu.charger.ExtendedChargeFuture;
+import org.sonatype.sisu.charger.ChargeListener;
+import org.sonatype.sisu.charger.ChargeOptions;
 import org.sonatype.sisu.charger.ChargeStrategy;
 import org.sonatype.sisu.charger.Charger;
+import org.sonatype.sisu.charger.ContextPropagator;
 import org.sonatype.sisu.charger.ExceptionHandler;
 import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.LazyChargeFuture;
+import org.sonatype.sisu.charger.LazyCharger;
 
 import com.google.common.base.Preconditions;
 
+/**
+ * The default charger. The settings it applies to the charges it assembles are given by {@link ChargeOptions} when it
+ * is created, and never change: the injected one applies the defaults, create a charger of your own to apply others.
+ * 
+ * @author cstamas
+ */
 @Singleton
 @Named
 public class DefaultCharger
-    implements Charger
+    implements Charger, LazyCharger
 {
-    public <E> ChargeFuture<E> submit( final List<Callable<E>> callables, final ChargeStrategy strategy,
-                                       final CallableExecutor executorServiceProvider )
+    private final ChargeOptions options;
+
+    private final List<ChargeListener> chargeListeners;
+
+    public DefaultCharger()
+    {
+        this( ChargeOptions.DEFAULT );
+    }
+
+    /**
+     * Creates a charger applying given options to charges it assembles.
+     * 
+     * @param options
+     */
+    public DefaultCharger( final ChargeOptions options )
+    {
+        this( options, Collections.<ChargeListener> emptyList() );
+    }
+
+    /**
+     * Creates a charger notifying given listeners about charges it assembles. The list is consulted on every charge
+     * assembly, so listeners might come and go.
+     * 
+     * @param chargeListeners
+     */
+    @Inject
+    public DefaultCharger( final List<ChargeListener> chargeListeners )
+    {
+        this( ChargeOptions.DEFAULT, chargeListeners );
+    }
+
+    /**
+     * Creates a charger applying given options to charges it assembles, and notifying given listeners about them.
+     * 
+     * @param options
+     * @param chargeListeners
+     */
+    public DefaultCharger( final ChargeOptions options, final List<ChargeListener> chargeListeners )
+    {
+        this.options = Preconditions.checkNotNull( options );
+        this.chargeListeners = Preconditions.checkNotNull( chargeListeners );
+    }
+
+    /**
+     * Returns the options this charger applies to charges it assembles.
+     * 
+     * @return
+     */
+    public ChargeOptions getOptions()
+    {
+        return options;
+    }
+
+    public <E> ExtendedChargeFuture<E> submit( final List<Callable<E>> callables, final ChargeStrategy strategy,
+                                               final CallableExecutor executorServiceProvider )
     {
         Preconditions.checkNotNull( callables );
 
-        Charge<E> charge = getChargeInstance( strategy );
+        Charge<E> charge = newCharge( strategy, callables.size() );
 
         for ( Callable<? extends E> callable : callables )
         {
@@ -35,13 +102,14 @@ public class DefaultCharger
         return submit( charge, executorServiceProvider );
     }
 
-    public <E> ChargeFuture<E> submit( final List<Callable<E>> callables, final ExceptionHandler exceptionHandler,
-                                       final ChargeStrategy strategy,
-                                       final CallableExecutor executorServiceProvider )
+    public <E> ExtendedChargeFuture<E> submit( final List<Callable<E>> callables,
+                                               final ExceptionHandler exceptionHandler,
+                                               final ChargeStrategy strategy,
+                                               final CallableExecutor executorServiceProvider )
     {
         Preconditions.checkNotNull( callables );
 
-        Charge<E> charge = getChargeInstance( strategy );
+        Charge<E> charge = newCharge( strategy, callables.size() );
 
         for ( Callable<? extends E> callable : callables )
         {
@@ -51,19 +119,90 @@ public class DefaultCharger
         return submit( charge, executorServiceProvider );
     }
 
-    public <E> ChargeFuture<E> submit( Charge<E> charge, final CallableExecutor callableExecutor )
+    public <E> ExtendedChargeFuture<E> submit( Charge<E> charge, final CallableExecutor callableExecutor )
     {
         Preconditions.checkNotNull( charge );
 
         charge.exec( callableExecutor );
 
-        return new DefaultChargeFuture<E>( charge );
+        // the charge is it's own future
+        return charge;
+    }
+
+    public <E> LazyChargeFuture<E> submit( final Iterator<? extends Callable<? extends E>> callables,
+                                           final ExceptionHandler exceptionHandler, final int window,
+                                           final CallableExecutor callableExecutor )
+    {
+        checkLazyChargeSupported( options.getAdmissionControl() == null, "admission control" );
+        checkLazyChargeSupported( options.getMetrics() == null, "metrics" );
+        checkLazyChargeSupported( options.getSingleFlight() == null, "single flight" );
+        checkLazyChargeSupported( options.getResultCache() == null, "result cache" );
+        checkLazyChargeSupported( options.getRetryPolicy() == null, "retry policy" );
+
+        final LazyCharge<E> charge = getLazyChargeInstance( callables, exceptionHandler, window );
+
+        charge.setPriority( options.getLazyChargePriority() );
+
+        for ( ContextPropagator<?> contextPropagator : options.getContextPropagators() )
+        {
+            charge.captureContext( contextPropagator );
+        }
+
+        charge.exec( callableExecutor );
+
+        return charge;
     }
 
     // ==
 
+    private <E> Charge<E> newCharge( final ChargeStrategy strategy, final int expectedAmmoCount )
+    {
+        final Charge<E> charge = getChargeInstance( strategy );
+
+        charge.ensureAmmoCapacity( expectedAmmoCount );
+
+        charge.setLoserPolicy( options.getLoserPolicy() );
+
+        charge.setDeadlinePolicy( options.getDeadlinePolicy() );
+
+        charge.setWaitPolicy( options.getWaitPolicy() );
+
+        charge.setAdmissionControl( options.getAdmissionControl() );
+
+        charge.setMetrics( options.getMetrics() );
+
+        charge.setSingleFlight( options.getSingleFlight() );
+
+        charge.setResultCache( options.getResultCache() );
+
+        charge.setRetryPolicy( options.getRetryPolicy() );
+
+        for ( ContextPropagator<?> contextPropagator : options.getContextPropagators() )
+        {
+            charge.captureContext( contextPropagator );
+        }
+
+        if ( !chargeListeners.isEmpty() )
+        {
+            charge.setListener( new CompositeChargeListener( chargeListeners ) );
+        }
+
+        return charge;
+    }
+
+    private void checkLazyChargeSupported( final boolean supported, final String setting )
+    {
+        Preconditions.checkState( supported, "Lazy charges do not support %s, and this charger applies one!", setting );
+    }
+
     protected <E> Charge<E> getChargeInstance( final ChargeStrategy strategy )
     {
         return new Charge<E>( strategy );
     }
+
+    protected <E> LazyCharge<E> getLazyChargeInstance( final Iterator<? extends Callable<? extends E>> callables,
+                                                       final ExceptionHandler exceptionHandler, final int window )
+    {
+        return new LazyCharge<E>( callables, exceptionHandler, window );
+    }
 }
@@ -0,0 +1,58 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.sisu.charger.IndexedResult;
+import org.sonatype.sisu.charger.ResultStream;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Streams the payloads of a charge in arrival order.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public class DefaultResultStream<E>
+    implements ResultStream<E>
+{
+    private final Charge<E> charge;
+
+    private int position;
+
+    public DefaultResultStream( final Charge<E> charge )
+    {
+        this.charge = Preconditions.checkNotNull( charge );
+        this.position = 0;
+    }
+
+    public IndexedResult<E> next()
+        throws Exception
+    {
+        return next( -1, TimeUnit.NANOSECONDS );
+    }
+
+    public IndexedResult<E> next( final long timeout, final TimeUnit unit )
+        throws Exception
+    {
+        final long deadline = System.nanoTime() + unit.toNanos( timeout );
+
+        while ( position < charge.getAmmoFutures().size() )
+        {
+            final long remaining = timeout < 0 ? -1 : Math.max( 0, deadline - System.nanoTime() );
+
+            final ChargeWrapper<E> wrapper = charge.awaitArrival( position, remaining, TimeUnit.NANOSECONDS );
+
+            position++;
+
+            final E e = wrapper.getOutcome();
+
+            if ( e != null )
+            {
+                return new IndexedResult<E>( wrapper.getIndex(), e );
+            }
+        }
+
+        return null;
+    }
+}
@@ -2,6 +2,8 @@ package org.sonatype.sisu.charger.internal;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.sonatype.sisu.charger.ChargeStrategy;
 
@@ -10,6 +12,9 @@ import org.sonatype.sisu.charger.ChargeStrategy;
  * ChargeStrategy for "first with payload or unhandled exception". This strategy will block as long as first Callable
  * delivers some payload or fails with unhandled exception -- making whole Charge to fail. In case of "bail out", the
  * next Callable is processed in same way, as long as there are Callables.
+ * <p>
+ * Every charge carries a cursor pointing to the first ammo not yet known to be a bail out. Completing ammo advance
+ * the cursor as far as it can go, so every ammo is inspected only once.
  * 
  * @author cstamas
  */
@@ -18,55 +23,102 @@ public class FirstArrivedInOrderChargeStrategy
 {
     public static final ChargeStrategy INSTANCE = new FirstArrivedInOrderChargeStrategy();
 
-    @Override
-    public <E> boolean isDone( final Charge<E> charge )
+    private static class ChargeState<E>
     {
-        List<ChargeWrapper<E>> ammoFutures = charge.getAmmoFutures();
+        /**
+         * Index of first ammo not inspected yet, or negative while some thread inspects it.
+         */
+        final AtomicInteger cursor;
+
+        final AtomicReference<ChargeWrapper<E>> winner;
 
-        for ( ChargeWrapper<E> a : ammoFutures )
+        private ChargeState()
         {
-            if ( a.getFuture().isDone() )
-            {
-                try
-                {
-                    if ( getFutureResult( a ) != null )
-                    {
-                        return true;
-                    }
-                }
-                catch ( Exception e )
-                {
-                    // nope, not done but failed badly
-                    return true;
-                }
-            }
+            this.cursor = new AtomicInteger( 0 );
+            this.winner = new AtomicReference<ChargeWrapper<E>>();
         }
+    }
+
+    @Override
+    public <E> boolean isDone( final Charge<E> charge )
+    {
+        final ChargeState<?> state = (ChargeState<?>) charge.getStrategyState();
 
-        return false;
+        return state != null
+            && ( state.winner.get() != null || state.cursor.get() >= charge.getAmmoFutures().size() );
     }
 
     @Override
     public <E> List<E> getResult( final Charge<E> charge )
         throws Exception
     {
-        final List<ChargeWrapper<E>> futures = charge.getAmmoFutures();
+        if ( charge.getAmmoFutures().isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        charge.awaitDone();
+
+        final ChargeState<E> state = getChargeState( charge );
+
+        final ChargeWrapper<E> winner = state.winner.get();
+
+        if ( winner != null )
+        {
+            return Collections.singletonList( getDecidingResult( winner ) );
+        }
+        else
+        {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public <E> void setDone( final Charge<E> charge, final ChargeWrapper<E> wrapper )
+    {
+        final ChargeState<E> state = getChargeState( charge );
+
+        final List<ChargeWrapper<E>> ammo = charge.getAmmoFutures();
 
-        for ( ChargeWrapper<E> f : futures )
+        while ( state.winner.get() == null )
         {
-            E e = getFutureResult( f );
+            final int i = state.cursor.get();
 
-            if ( e != null )
+            // cursor is busy, or at end, or the ammo under it is not here yet: who moves it will look further
+            if ( i < 0 || i >= ammo.size() || !ammo.get( i ).isDone() || !state.cursor.compareAndSet( i, -i - 1 ) )
             {
-                return Collections.singletonList( e );
+                return;
+            }
+
+            final ChargeWrapper<E> current = ammo.get( i );
+
+            if ( isDeciding( current ) )
+            {
+                state.winner.set( current );
             }
-        }
 
-        return Collections.emptyList();
+            // release the cursor and loop, since next ammo might arrived meanwhile
+            state.cursor.set( i + 1 );
+        }
     }
 
-    @Override
-    public <E> void setDone( Charge<E> eCharge, ChargeWrapper<E> eChargeWrapper )
+    // ==
+
+    @SuppressWarnings( "unchecked" )
+    private <E> ChargeState<E> getChargeState( final Charge<E> charge )
     {
-        // noop, don't need this
+        ChargeState<E> state = (ChargeState<E>) charge.getStrategyState();
+
+        if ( state == null )
+        {
+            state = new ChargeState<E>();
+
+            if ( !charge.compareAndSetStrategyState( null, state ) )
+            {
+                state = (ChargeState<E>) charge.getStrategyState();
+            }
+        }
+
+        return state;
     }
 }
@@ -0,0 +1,37 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.sisu.charger.HedgingDelay;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Hedging delay of fixed length.
+ * 
+ * @author cstamas
+ */
+public class FixedHedgingDelay
+    implements HedgingDelay
+{
+    private final long delayNanos;
+
+    public FixedHedgingDelay( final long delay, final TimeUnit unit )
+    {
+        Preconditions.checkArgument( delay >= 0, "Delay must not be negative!" );
+
+        this.delayNanos = unit.toNanos( delay );
+    }
+
+    @Override
+    public long getDelayNanos()
+    {
+        return delayNanos;
+    }
+
+    @Override
+    public void recordLatency( final long latencyNanos )
+    {
+        // nop, we are fixed
+    }
+}
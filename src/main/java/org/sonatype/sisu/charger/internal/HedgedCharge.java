@@ -0,0 +1,246 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.sonatype.sisu.charger.AdmissionControl;
+import org.sonatype.sisu.charger.HedgingDelay;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Charge with "first arrived" semantics, that does not fire all it's ammo at once: it launches the first one, and
+ * launches the next one only if no payload arrived within the hedging delay, or if all launched ones bailed out. This
+ * cuts the tail latency of "first arrived" charges, without multiplying the load by the count of ammo. Once charge is
+ * decided, the ammo not launched yet is abandoned, whatever the loser policy is.
+ * <p>
+ * Chargers do not assemble hedged charges on their own: a hedged charge is crufted manually and tossed to
+ * {@link DefaultCharger#submit(Charge, org.sonatype.sisu.charger.CallableExecutor)} as any other charge, or a charger
+ * overriding {@link DefaultCharger#getChargeInstance(org.sonatype.sisu.charger.ChargeStrategy)} returns it, to have
+ * all the charges it assembles hedged.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public class HedgedCharge<E>
+    extends Charge<E>
+{
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<HedgedCharge, HedgedCharge.Hedge> HEDGE =
+        AtomicReferenceFieldUpdater.newUpdater( HedgedCharge.class, HedgedCharge.Hedge.class, "hedge" );
+
+    /**
+     * Timer task launching the ammo with given index, unless something arrived, or it was launched meanwhile.
+     */
+    private final class Hedge
+        implements Runnable
+    {
+        private final int index;
+
+        private volatile ScheduledFuture<?> future;
+
+        private Hedge( final int index )
+        {
+            this.index = index;
+        }
+
+        @Override
+        public void run()
+        {
+            // nothing arrived and nobody launched another one meanwhile
+            if ( !isDone() && launched.compareAndSet( index, index + 1 ) )
+            {
+                // submitting might take a while, not on the timer
+                dispatch( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        launchAsync( index );
+                    }
+                } );
+            }
+        }
+
+        private void cancel()
+        {
+            final ScheduledFuture<?> future = this.future;
+
+            if ( future != null )
+            {
+                future.cancel( false );
+            }
+        }
+    }
+
+    private final HedgingDelay hedgingDelay;
+
+    private final AtomicInteger launched;
+
+    private volatile long[] launchedAt;
+
+    private volatile Hedge hedge;
+
+    public HedgedCharge( final HedgingDelay hedgingDelay )
+    {
+        super( FirstArrivedChargeStrategy.INSTANCE );
+
+        this.hedgingDelay = Preconditions.checkNotNull( hedgingDelay );
+
+        this.launched = new AtomicInteger( 0 );
+    }
+
+    public HedgingDelay getHedgingDelay()
+    {
+        return hedgingDelay;
+    }
+
+    /**
+     * Returns the count of ammo launched so far.
+     * 
+     * @return
+     */
+    public int getLaunchedCount()
+    {
+        return Math.min( launched.get(), getAmmoFutures().size() );
+    }
+
+    /**
+     * Hedged charges are not subject of admission control, they bound their load by hedging itself. Setting none is
+     * fine, as chargers do for every charge they assemble.
+     * 
+     * @throws IllegalArgumentException if admission control is not null.
+     */
+    @Override
+    public void setAdmissionControl( final AdmissionControl admissionControl )
+    {
+        Preconditions.checkArgument( admissionControl == null, "Hedged charge is not subject of admission control!" );
+    }
+
+    @Override
+    public void checkIsDone( final ChargeWrapper<E> wrapper )
+    {
+        super.checkIsDone( wrapper );
+
+        if ( wrapper.getFailure() == null && wrapper.getResult() != null )
+        {
+            hedgingDelay.recordLatency( System.nanoTime() - launchedAt[wrapper.getIndex()] );
+        }
+
+        if ( !isDone() )
+        {
+            // it bailed out, do not wait for the delay
+            launchAsync( launched.getAndIncrement() );
+        }
+    }
+
+    // ==
+
+    /**
+     * Applies the loser policy, and abandons the ammo never launched, as nothing would ever launch it.
+     */
+    @Override
+    protected void reclaimLosers()
+    {
+        super.reclaimLosers();
+
+        @SuppressWarnings( "unchecked" )
+        final Hedge pending = HEDGE.getAndSet( this, null );
+
+        if ( pending != null )
+        {
+            pending.cancel();
+        }
+
+        for ( ChargeWrapper<E> ammo : getAmmoFutures() )
+        {
+            ammo.abandonUnlaunched();
+        }
+    }
+
+    @Override
+    protected void launchAmmo()
+    {
+        launchedAt = new long[getAmmoFutures().size()];
+
+        if ( !getAmmoFutures().isEmpty() )
+        {
+            // first one is launched by caller, and a rejection goes back to it
+            launched.set( 1 );
+
+            launchHedged( 0 );
+        }
+    }
+
+    /**
+     * Launches the ammo with given index from a worker or the timer, where nobody would see a rejection: rejected ammo
+     * is abandoned, and handled as it would bail out.
+     */
+    protected void launchAsync( final int index )
+    {
+        if ( index < getAmmoFutures().size() )
+        {
+            try
+            {
+                launchHedged( index );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                final ChargeWrapper<E> ammo = getAmmoFutures().get( index );
+
+                if ( ammo.abandon() )
+                {
+                    checkIsDone( ammo );
+                }
+            }
+        }
+    }
+
+    protected void launchHedged( final int index )
+    {
+        final List<ChargeWrapper<E>> ammo = getAmmoFutures();
+
+        launchedAt[index] = System.nanoTime();
+
+        launch( ammo.get( index ) );
+
+        if ( index + 1 < ammo.size() )
+        {
+            final Hedge next = new Hedge( index + 1 );
+
+            next.future = ChargeTimer.schedule( next, hedgingDelay.getDelayNanos(), TimeUnit.NANOSECONDS );
+
+            // only the one for the highest index might launch anything, the others lost their chance
+            while ( true )
+            {
+                @SuppressWarnings( "unchecked" )
+                final Hedge previous = HEDGE.get( this );
+
+                if ( previous != null && previous.index >= next.index )
+                {
+                    next.cancel();
+
+                    break;
+                }
+                else if ( HEDGE.compareAndSet( this, previous, next ) )
+                {
+                    if ( previous != null )
+                    {
+                        previous.cancel();
+                    }
+
+                    break;
+                }
+            }
+
+            if ( isDone() && HEDGE.compareAndSet( this, next, null ) )
+            {
+                next.cancel();
+            }
+        }
+    }
+}
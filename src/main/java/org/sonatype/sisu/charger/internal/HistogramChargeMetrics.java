@@ -0,0 +1,122 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.sonatype.sisu.charger.ChargeMetrics;
+import org.sonatype.sisu.charger.ChargeStrategy;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * ChargeMetrics aggregating timings into {@link LatencyHistogram}s, per strategy class and charge name (names should
+ * come from a small, fixed set, as histograms are never evicted). Recorders are looked up without allocation once
+ * they exist, and recording into them never allocates.
+ * 
+ * @author cstamas
+ */
+public class HistogramChargeMetrics
+    implements ChargeMetrics
+{
+    /**
+     * The name unnamed charges are aggregated under.
+     */
+    public static final String UNNAMED = "";
+
+    /**
+     * Histograms of charges sharing the same name and strategy.
+     */
+    public static class HistogramRecorder
+        implements Recorder
+    {
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+
+        private final LatencyHistogram execution = new LatencyHistogram();
+
+        private final LatencyHistogram resultWait = new LatencyHistogram();
+
+        @Override
+        public void recordQueueWait( final long nanos )
+        {
+            queueWait.record( nanos );
+        }
+
+        @Override
+        public void recordExecution( final long nanos )
+        {
+            execution.record( nanos );
+        }
+
+        @Override
+        public void recordResultWait( final long nanos )
+        {
+            resultWait.record( nanos );
+        }
+
+        public LatencyHistogram getQueueWait()
+        {
+            return queueWait;
+        }
+
+        public LatencyHistogram getExecution()
+        {
+            return execution;
+        }
+
+        public LatencyHistogram getResultWait()
+        {
+            return resultWait;
+        }
+    }
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, HistogramRecorder>> recorders;
+
+    public HistogramChargeMetrics()
+    {
+        this.recorders = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, HistogramRecorder>>();
+    }
+
+    @Override
+    public HistogramRecorder getRecorder( final String chargeName, final ChargeStrategy strategy )
+    {
+        final Class<?> strategyClass = strategy.getClass();
+
+        final String name = chargeName == null ? UNNAMED : chargeName;
+
+        ConcurrentMap<String, HistogramRecorder> byName = recorders.get( strategyClass );
+
+        if ( byName == null )
+        {
+            recorders.putIfAbsent( strategyClass, new ConcurrentHashMap<String, HistogramRecorder>() );
+
+            byName = recorders.get( strategyClass );
+        }
+
+        HistogramRecorder recorder = byName.get( name );
+
+        if ( recorder == null )
+        {
+            byName.putIfAbsent( name, new HistogramRecorder() );
+
+            recorder = byName.get( name );
+        }
+
+        return recorder;
+    }
+
+    /**
+     * Returns the histograms of charges with given name and strategy class, or null if none was recorded.
+     * 
+     * @param chargeName the name of the charge, or null if it is not named.
+     * @param strategyClass
+     * @return
+     */
+    public HistogramRecorder getHistograms( final String chargeName,
+                                            final Class<? extends ChargeStrategy> strategyClass )
+    {
+        final ConcurrentMap<String, HistogramRecorder> byName =
+            recorders.get( Preconditions.checkNotNull( strategyClass ) );
+
+        return byName == null ? null : byName.get( chargeName == null ? UNNAMED : chargeName );
+    }
+}
@@ -0,0 +1,121 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with power of two buckets: bucket N counts the latencies in nanoseconds having N significant
+ * bits (ie. bucket 10 holds the ones from 512ns to 1023ns). Coarse, but recording is just two atomic increments with
+ * no allocation and no locking, and it covers all the range of long.
+ * 
+ * @author cstamas
+ */
+public class LatencyHistogram
+{
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets;
+
+    private final AtomicLong totalNanos;
+
+    public LatencyHistogram()
+    {
+        this.buckets = new AtomicLongArray( BUCKETS );
+        this.totalNanos = new AtomicLong( 0 );
+    }
+
+    /**
+     * Records a latency, negative ones are recorded as zero.
+     * 
+     * @param nanos
+     */
+    public void record( final long nanos )
+    {
+        final long value = Math.max( 0, nanos );
+
+        buckets.incrementAndGet( BUCKETS - Long.numberOfLeadingZeros( value ) );
+
+        totalNanos.addAndGet( value );
+    }
+
+    /**
+     * Returns the count of recorded latencies.
+     * 
+     * @return
+     */
+    public long getCount()
+    {
+        long count = 0;
+
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            count += buckets.get( i );
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the mean of recorded latencies in given unit, or zero if none recorded.
+     * 
+     * @param unit
+     * @return
+     */
+    public long getMean( final TimeUnit unit )
+    {
+        final long count = getCount();
+
+        return count == 0 ? 0 : unit.convert( totalNanos.get() / count, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding given percentile of recorded latencies in given unit, or zero if
+     * none recorded.
+     * 
+     * @param percentile between 0 and 100.
+     * @param unit
+     * @return
+     */
+    public long getPercentile( final double percentile, final TimeUnit unit )
+    {
+        final long[] counts = new long[BUCKETS];
+
+        long count = 0;
+
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            counts[i] = buckets.get( i );
+
+            count += counts[i];
+        }
+
+        if ( count == 0 )
+        {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil( count * Math.min( 100, Math.max( 0, percentile ) ) / 100 );
+
+        long seen = 0;
+
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            seen += counts[i];
+
+            if ( seen >= rank && counts[i] > 0 )
+            {
+                return unit.convert( getUpperBound( i ), TimeUnit.NANOSECONDS );
+            }
+        }
+
+        return unit.convert( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+    }
+
+    // ==
+
+    private static long getUpperBound( final int bucket )
+    {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : ( 1L << bucket ) - 1;
+    }
+}
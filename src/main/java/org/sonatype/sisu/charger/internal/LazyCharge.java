@@ -0,0 +1,542 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.ContextPropagator;
+import org.sonatype.sisu.charger.ExceptionHandler;
+import org.sonatype.sisu.charger.IndexedResult;
+import org.sonatype.sisu.charger.LazyChargeFuture;
+import org.sonatype.sisu.charger.PrioritizedCallable;
+import org.sonatype.sisu.charger.ResultStream;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Lazy charge, pulling it's ammo from an Iterator as it goes, instead of having all of it upfront. At most a window of
+ * ammo is "alive" at once: launched and not arrived yet, or arrived with a payload not taken from the result stream
+ * yet. New ammo is pulled only when some of these leave the window, hence memory stays bounded regardless of count of
+ * ammo. Ammo bailing out (returning null) or failing with exceptions handled by the ExceptionHandler leaves the window
+ * once it arrives. The first unhandled exception stops the pulling, the ammo in flight still finishes.
+ * <p>
+ * Pulling is done by one thread at a time (whoever releases a slot in the window), so the Iterator does not need to be
+ * thread safe.
+ * 
+ * @author cstamas
+ * @param <E>
+ */
+public class LazyCharge<E>
+    implements LazyChargeFuture<E>
+{
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<LazyCharge, CallableExecutor> EXECUTOR =
+        AtomicReferenceFieldUpdater.newUpdater( LazyCharge.class, CallableExecutor.class, "executor" );
+
+    private static final Object END = new Object();
+
+    /**
+     * Unhandled exception, as placed into the stream of arrivals.
+     */
+    private static final class Failure
+    {
+        final Exception exception;
+
+        Failure( final Exception exception )
+        {
+            this.exception = exception;
+        }
+    }
+
+    private final Iterator<? extends Callable<? extends E>> callables;
+
+    private final ExceptionHandler exceptionHandler;
+
+    private final int window;
+
+    private final AtomicInteger freeSlots;
+
+    private final AtomicInteger pumpRequests;
+
+    private volatile boolean exhausted;
+
+    private volatile CallableExecutor executor;
+
+    private volatile int priority;
+
+    private volatile ContextSnapshot context;
+
+    private final AtomicInteger launched;
+
+    private final AtomicInteger completed;
+
+    private final Set<Ammo> inFlight;
+
+    private final BlockingQueue<Object> arrivals;
+
+    private final AtomicReference<Exception> failure;
+
+    private final AtomicBoolean done;
+
+    private final ResultStream<E> resultStream;
+
+    public LazyCharge( final Iterator<? extends Callable<? extends E>> callables,
+                       final ExceptionHandler exceptionHandler, final int window )
+    {
+        Preconditions.checkArgument( window > 0, "Window must be positive!" );
+
+        this.callables = Preconditions.checkNotNull( callables );
+        this.exceptionHandler = Preconditions.checkNotNull( exceptionHandler );
+        this.window = window;
+        this.freeSlots = new AtomicInteger( window );
+        this.pumpRequests = new AtomicInteger( 0 );
+        this.launched = new AtomicInteger( 0 );
+        this.completed = new AtomicInteger( 0 );
+        this.inFlight = Collections.newSetFromMap( new ConcurrentHashMap<Ammo, Boolean>() );
+        this.arrivals = new LinkedBlockingQueue<Object>();
+        this.failure = new AtomicReference<Exception>();
+        this.done = new AtomicBoolean( false );
+        this.resultStream = new LazyResultStream();
+        this.context = ContextSnapshot.EMPTY;
+    }
+
+    public int getWindow()
+    {
+        return window;
+    }
+
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of this charge, carried by it's ammo to the executor (see {@link PrioritizedCallable}). Ammo
+     * pulled after the change carries the new one.
+     * 
+     * @param priority
+     */
+    public void setPriority( final int priority )
+    {
+        this.priority = priority;
+    }
+
+    /**
+     * Attaches given context to this charge, to be bound by given propagator around every execution of it's ammo.
+     * Should be invoked before charge is executed.
+     * 
+     * @param propagator
+     * @param context the context, or null if there is none (the executing threads have none bound either).
+     */
+    public <C> void addContext( final ContextPropagator<C> propagator, final C context )
+    {
+        this.context = this.context.with( propagator, context );
+    }
+
+    /**
+     * Captures the context bound to the calling thread by given propagator, and attaches it to this charge. Should be
+     * invoked before charge is executed.
+     * 
+     * @param propagator
+     */
+    public <C> void captureContext( final ContextPropagator<C> propagator )
+    {
+        addContext( propagator, propagator.capture() );
+    }
+
+    /**
+     * Executes this charge using given executor. A charge might be executed only once. If the executor rejects any of
+     * the ammo launched by this method, the charge is cancelled, otherwise rejections made to ammo launched later fail
+     * the charge.
+     * 
+     * @param runner
+     * @throws RejectedExecutionException if the executor rejected the ammo.
+     * @throws IllegalStateException if this charge was executed already.
+     */
+    public void exec( final CallableExecutor runner )
+    {
+        if ( !EXECUTOR.compareAndSet( this, null, Preconditions.checkNotNull( runner ) ) )
+        {
+            throw new IllegalStateException( "Charge was executed already!" );
+        }
+
+        try
+        {
+            pump( true );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            cancel( true );
+
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean cancel( final boolean mayInterruptIfRunning )
+    {
+        if ( done.compareAndSet( false, true ) )
+        {
+            exhausted = true;
+
+            for ( Ammo ammo : inFlight )
+            {
+                final Future<E> future = ammo.future;
+
+                if ( future != null )
+                {
+                    future.cancel( mayInterruptIfRunning );
+                }
+
+                if ( ammo.arrived.compareAndSet( false, true ) )
+                {
+                    inFlight.remove( ammo );
+
+                    completed.incrementAndGet();
+                }
+            }
+
+            arrivals.add( END );
+
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return done.get();
+    }
+
+    @Override
+    public int getLaunchedCount()
+    {
+        return launched.get();
+    }
+
+    @Override
+    public int getCompletedCount()
+    {
+        return completed.get();
+    }
+
+    @Override
+    public ResultStream<E> getResultStream()
+    {
+        return resultStream;
+    }
+
+    @Override
+    public void drain()
+        throws Exception
+    {
+        while ( true )
+        {
+            try
+            {
+                if ( resultStream.next() == null )
+                {
+                    break;
+                }
+            }
+            catch ( Exception e )
+            {
+                // the failure is thrown at the end, anything else (ie. interruption) right away
+                if ( e != failure.get() )
+                {
+                    throw e;
+                }
+            }
+        }
+
+        final Exception e = failure.get();
+
+        if ( e != null )
+        {
+            throw e;
+        }
+    }
+
+    // ==
+
+    /**
+     * Pulls and launches ammo while there are free slots in the window. Only one thread pumps at a time, the others
+     * requesting it meanwhile just make it loop once more.
+     * 
+     * @param rejectToCaller true to throw the rejection of executor, false to fail the charge with it.
+     * @throws RejectedExecutionException if the executor rejected the ammo, and the rejection goes to caller.
+     */
+    protected void pump( final boolean rejectToCaller )
+        throws RejectedExecutionException
+    {
+        if ( pumpRequests.getAndIncrement() != 0 )
+        {
+            return;
+        }
+
+        int requests = 1;
+
+        do
+        {
+            while ( !exhausted && !isDone() && freeSlots.get() > 0 )
+            {
+                final Ammo ammo;
+
+                try
+                {
+                    if ( !callables.hasNext() )
+                    {
+                        exhausted = true;
+
+                        break;
+                    }
+
+                    ammo = new Ammo( launched.get(), Preconditions.checkNotNull( callables.next() ) );
+                }
+                catch ( RuntimeException e )
+                {
+                    fail( e );
+
+                    break;
+                }
+
+                freeSlots.decrementAndGet();
+
+                inFlight.add( ammo );
+
+                launched.incrementAndGet();
+
+                try
+                {
+                    ammo.future = executor.submit( ammo );
+                }
+                catch ( RejectedExecutionException e )
+                {
+                    if ( rejectToCaller )
+                    {
+                        throw e;
+                    }
+
+                    if ( ammo.arrived.compareAndSet( false, true ) )
+                    {
+                        inFlight.remove( ammo );
+
+                        fail( e );
+
+                        completed.incrementAndGet();
+
+                        freeSlots.incrementAndGet();
+                    }
+                }
+            }
+
+            requests = pumpRequests.addAndGet( -requests );
+        }
+        while ( requests != 0 );
+
+        checkDone();
+    }
+
+    protected void arrive( final Ammo ammo, final E payload, final Exception exception )
+    {
+        if ( !ammo.arrived.compareAndSet( false, true ) )
+        {
+            // cancelled
+            return;
+        }
+
+        inFlight.remove( ammo );
+
+        boolean keepsSlot = false;
+
+        if ( exception == null )
+        {
+            if ( payload != null )
+            {
+                arrivals.add( new IndexedResult<E>( ammo.index, payload ) );
+
+                keepsSlot = true;
+            }
+        }
+        else if ( !( exception instanceof InterruptedException ) && !exceptionHandler.handle( exception ) )
+        {
+            fail( exception );
+        }
+
+        completed.incrementAndGet();
+
+        if ( !keepsSlot )
+        {
+            releaseSlot();
+        }
+
+        checkDone();
+    }
+
+    protected void releaseSlot()
+    {
+        freeSlots.incrementAndGet();
+
+        pump( false );
+    }
+
+    protected void fail( final Exception exception )
+    {
+        if ( failure.compareAndSet( null, exception ) )
+        {
+            arrivals.add( new Failure( exception ) );
+        }
+
+        exhausted = true;
+    }
+
+    protected void checkDone()
+    {
+        if ( exhausted && completed.get() == launched.get() && done.compareAndSet( false, true ) )
+        {
+            arrivals.add( END );
+        }
+    }
+
+    // ==
+
+    /**
+     * The ammo pulled from Iterator.
+     */
+    protected final class Ammo
+        implements PrioritizedCallable<E>
+    {
+        private final int index;
+
+        private final Callable<? extends E> callable;
+
+        private final AtomicBoolean arrived;
+
+        private volatile Future<E> future;
+
+        private Ammo( final int index, final Callable<? extends E> callable )
+        {
+            this.index = index;
+            this.callable = callable;
+            this.arrived = new AtomicBoolean( false );
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return priority;
+        }
+
+        @Override
+        public E call()
+            throws Exception
+        {
+            if ( isDone() )
+            {
+                arrive( this, null, null );
+
+                return null;
+            }
+
+            try
+            {
+                final ContextSnapshot context = LazyCharge.this.context;
+
+                final Object previous = context.bind();
+
+                final E e;
+
+                try
+                {
+                    e = callable.call();
+                }
+                finally
+                {
+                    context.restore( previous );
+                }
+
+                arrive( this, e, null );
+
+                return e;
+            }
+            catch ( Exception e )
+            {
+                arrive( this, null, e );
+
+                throw e;
+            }
+            catch ( Error e )
+            {
+                arrive( this, null, new RuntimeException( e ) );
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The one and only stream of the payloads of this charge. Taking a payload frees it's slot in the window.
+     */
+    private final class LazyResultStream
+        implements ResultStream<E>
+    {
+        private boolean ended;
+
+        public IndexedResult<E> next()
+            throws Exception
+        {
+            return next( -1, TimeUnit.NANOSECONDS );
+        }
+
+        @SuppressWarnings( "unchecked" )
+        public IndexedResult<E> next( final long timeout, final TimeUnit unit )
+            throws Exception
+        {
+            if ( ended )
+            {
+                return null;
+            }
+
+            final Object item = timeout < 0 ? arrivals.take() : arrivals.poll( timeout, unit );
+
+            if ( item == null )
+            {
+                throw new TimeoutException( "No payload arrived in " + timeout + " " + unit.toString().toLowerCase()
+                    + "." );
+            }
+            else if ( item == END )
+            {
+                ended = true;
+
+                return null;
+            }
+            else if ( item instanceof Failure )
+            {
+                throw ( (Failure) item ).exception;
+            }
+            else
+            {
+                releaseSlot();
+
+                return (IndexedResult<E>) item;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.sonatype.sisu.charger.HedgingDelay;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Hedging delay tracking a percentile of recently observed latencies (ie. the 95th percentile: a backup is launched
+ * only if the Callable is slower than 95% of recent ones). The latencies are kept in a fixed size ring buffer, and the
+ * percentile is recomputed only after every eighth of the buffer was replaced with new samples.
+ * 
+ * @author cstamas
+ */
+public class PercentileHedgingDelay
+    implements HedgingDelay
+{
+    private static final int WINDOW = 128;
+
+    private final double percentile;
+
+    private final long initialDelayNanos;
+
+    private final AtomicLongArray samples;
+
+    private final AtomicLong recorded;
+
+    private volatile long computedAt;
+
+    private volatile long delayNanos;
+
+    /**
+     * @param percentile the percentile to track, greater than 0 and at most 100.
+     * @param initialDelay the delay used until enough latencies are recorded.
+     * @param unit
+     */
+    public PercentileHedgingDelay( final double percentile, final long initialDelay, final TimeUnit unit )
+    {
+        Preconditions.checkArgument( percentile > 0 && percentile <= 100, "Percentile must be in (0, 100]!" );
+        Preconditions.checkArgument( initialDelay >= 0, "Delay must not be negative!" );
+
+        this.percentile = percentile;
+        this.initialDelayNanos = unit.toNanos( initialDelay );
+        this.samples = new AtomicLongArray( WINDOW );
+        this.recorded = new AtomicLong( 0 );
+        this.computedAt = 0;
+        this.delayNanos = initialDelayNanos;
+    }
+
+    @Override
+    public long getDelayNanos()
+    {
+        final long count = recorded.get();
+
+        if ( count < WINDOW / 8 )
+        {
+            return initialDelayNanos;
+        }
+
+        if ( count - computedAt >= WINDOW / 8 )
+        {
+            // racing threads might compute it concurrently, but they compute the same value
+            computedAt = count;
+            delayNanos = computePercentile( (int) Math.min( count, WINDOW ) );
+        }
+
+        return delayNanos;
+    }
+
+    @Override
+    public void recordLatency( final long latencyNanos )
+    {
+        samples.set( (int) ( recorded.getAndIncrement() % WINDOW ), latencyNanos );
+    }
+
+    // ==
+
+    private long computePercentile( final int count )
+    {
+        final long[] sorted = new long[count];
+
+        for ( int i = 0; i < count; i++ )
+        {
+            sorted[i] = samples.get( i );
+        }
+
+        Arrays.sort( sorted );
+
+        final int rank = (int) Math.ceil( percentile / 100 * count ) - 1;
+
+        return sorted[Math.max( 0, rank )];
+    }
+}
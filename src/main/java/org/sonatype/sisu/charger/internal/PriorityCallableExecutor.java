@@ -0,0 +1,170 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sonatype.sisu.charger.CallableExecutor;
+import org.sonatype.sisu.charger.PrioritizedCallable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * CallableExecutor with fixed count of worker threads, running the queued tasks of higher priority first (see
+ * {@link PrioritizedCallable}, tasks not having priority are of priority zero). To not starve the tasks of lower
+ * priority, queued tasks age: every aging interval spent in the queue is worth one priority level. It is done by
+ * ordering the tasks by their "virtual" enqueue time, that is the time they were enqueued at, moved back by their
+ * priority times the aging interval. Tasks of same virtual enqueue time run in submission order. The move is capped at
+ * a quarter of the range of {@link System#nanoTime()}, so huge priorities or aging intervals do not overflow it, and
+ * are just "most urgent" (or least urgent).
+ * 
+ * @author cstamas
+ */
+public class PriorityCallableExecutor
+    implements CallableExecutor
+{
+    /**
+     * The most a virtual enqueue time is moved by priority, keeping the difference of any two of them in range.
+     */
+    private static final long MAX_SHIFT_NANOS = Long.MAX_VALUE / 4;
+
+    private final long agingNanos;
+
+    private final AtomicLong sequence;
+
+    private final ThreadPoolExecutor executor;
+
+    public PriorityCallableExecutor( final int workerCount, final long agingInterval, final TimeUnit unit )
+    {
+        this( workerCount, agingInterval, unit,
+            new ThreadFactoryBuilder().setNameFormat( "charge-worker-%d" ).setDaemon( true ).build() );
+    }
+
+    public PriorityCallableExecutor( final int workerCount, final long agingInterval, final TimeUnit unit,
+                                     final ThreadFactory threadFactory )
+    {
+        Preconditions.checkArgument( workerCount > 0, "Worker count must be positive!" );
+        Preconditions.checkArgument( agingInterval > 0, "Aging interval must be positive!" );
+
+        this.agingNanos = unit.toNanos( agingInterval );
+        this.sequence = new AtomicLong( 0 );
+        this.executor =
+            new ThreadPoolExecutor( workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), Preconditions.checkNotNull( threadFactory ) )
+            {
+                @Override
+                protected <T> RunnableFuture<T> newTaskFor( final Callable<T> callable )
+                {
+                    return new PriorityTask<T>( callable, priorityOf( callable ) );
+                }
+
+                @Override
+                protected <T> RunnableFuture<T> newTaskFor( final Runnable runnable, final T value )
+                {
+                    return new PriorityTask<T>( Executors.callable( runnable, value ), priorityOf( runnable ) );
+                }
+
+                @Override
+                public void execute( final Runnable command )
+                {
+                    // the queue orders priority tasks only, anything else would not be comparable
+                    if ( command instanceof PriorityTask )
+                    {
+                        super.execute( command );
+                    }
+                    else
+                    {
+                        super.execute( newTaskFor( Preconditions.checkNotNull( command ), null ) );
+                    }
+                }
+            };
+    }
+
+    public long getAgingInterval( final TimeUnit unit )
+    {
+        return unit.convert( agingNanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Returns the count of tasks waiting in the queue.
+     * 
+     * @return
+     */
+    public int getQueueSize()
+    {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public <T> Future<T> submit( final Callable<T> task )
+    {
+        return executor.submit( Preconditions.checkNotNull( task ) );
+    }
+
+    /**
+     * Initiates an orderly shutdown, tasks already submitted are still executed.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    // ==
+
+    private static int priorityOf( final Object task )
+    {
+        return task instanceof PrioritizedCallable ? ( (PrioritizedCallable<?>) task ).getPriority() : 0;
+    }
+
+    /**
+     * Returns how much the virtual enqueue time of a task of given priority is moved back, capped to
+     * {@link #MAX_SHIFT_NANOS} either way.
+     */
+    private long getShiftNanos( final int priority )
+    {
+        final long levels = Math.abs( (long) priority );
+
+        final long shift = levels > MAX_SHIFT_NANOS / agingNanos ? MAX_SHIFT_NANOS : levels * agingNanos;
+
+        return priority < 0 ? -shift : shift;
+    }
+
+    private final class PriorityTask<T>
+        extends FutureTask<T>
+        implements Comparable<PriorityTask<?>>
+    {
+        private final long virtualEnqueuedAt;
+
+        private final long seq;
+
+        private PriorityTask( final Callable<T> callable, final int priority )
+        {
+            super( callable );
+
+            this.virtualEnqueuedAt = System.nanoTime() - getShiftNanos( priority );
+            this.seq = sequence.getAndIncrement();
+        }
+
+        @Override
+        public int compareTo( final PriorityTask<?> o )
+        {
+            // nanoTime values are compared by their difference only
+            final long diff = virtualEnqueuedAt - o.virtualEnqueuedAt;
+
+            if ( diff != 0 )
+            {
+                return diff < 0 ? -1 : 1;
+            }
+
+            return seq < o.seq ? -1 : ( seq == o.seq ? 0 : 1 );
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * ChargeStrategy for "first K payloads of N". The charge is done as soon as K Callables delivered payload, or as soon
+ * as K is not reachable anymore (too many of them bailed out or failed with handled exception), or when a Callable
+ * fails with unhandled exception -- making whole Charge to fail. The result contains the first K payloads in order as
+ * they arrived, or less, if K was not reached.
+ * <p>
+ * A charge having less Callables than K (N &lt; K) never reaches the quorum, hence it is done when all of them arrived
+ * (or one failed with unhandled exception), and the result contains all the payloads delivered.
+ * 
+ * @author cstamas
+ */
+public class QuorumChargeStrategy
+    extends AbstractChargeStrategy
+{
+    private final int quorum;
+
+    private static class ChargeState<E>
+    {
+        /**
+         * Slots of the first K payloads, claimed by arrival.
+         */
+        final AtomicReferenceArray<ChargeWrapper<E>> winners;
+
+        final AtomicInteger claimed;
+
+        /**
+         * Count of filled slots, counted after the slot was filled.
+         */
+        final AtomicInteger arrived;
+
+        final AtomicInteger missed;
+
+        final AtomicReference<ChargeWrapper<E>> failed;
+
+        private ChargeState( final int quorum )
+        {
+            this.winners = new AtomicReferenceArray<ChargeWrapper<E>>( quorum );
+            this.claimed = new AtomicInteger( 0 );
+            this.arrived = new AtomicInteger( 0 );
+            this.missed = new AtomicInteger( 0 );
+            this.failed = new AtomicReference<ChargeWrapper<E>>();
+        }
+    }
+
+    public QuorumChargeStrategy( final int quorum )
+    {
+        Preconditions.checkArgument( quorum > 0, "Quorum must be greater than zero!" );
+
+        this.quorum = quorum;
+    }
+
+    public int getQuorum()
+    {
+        return quorum;
+    }
+
+    @Override
+    public <E> void setDone( final Charge<E> charge, final ChargeWrapper<E> wrapper )
+    {
+        final ChargeState<E> state = getChargeState( charge );
+
+        if ( state.failed.get() != null || state.arrived.get() >= quorum )
+        {
+            // decided already
+            return;
+        }
+
+        if ( wrapper.getFailure() == null && wrapper.getResult() != null )
+        {
+            final int slot = state.claimed.getAndIncrement();
+
+            if ( slot < quorum )
+            {
+                state.winners.set( slot, wrapper );
+                state.arrived.incrementAndGet();
+            }
+        }
+        else if ( isDeciding( wrapper ) )
+        {
+            // no payload, but deciding, hence failed with unhandled exception
+            state.failed.compareAndSet( null, wrapper );
+        }
+        else
+        {
+            state.missed.incrementAndGet();
+        }
+    }
+
+    @Override
+    public <E> boolean isDone( final Charge<E> charge )
+    {
+        final ChargeState<?> state = (ChargeState<?>) charge.getStrategyState();
+
+        if ( state == null )
+        {
+            return false;
+        }
+
+        if ( state.failed.get() != null || state.arrived.get() >= quorum )
+        {
+            return true;
+        }
+
+        final int ammoCount = charge.getAmmoFutures().size();
+
+        if ( ammoCount < quorum )
+        {
+            // not reachable from the start, hence all arrived
+            return state.arrived.get() + state.missed.get() >= ammoCount;
+        }
+
+        return ammoCount - state.missed.get() < quorum;
+    }
+
+    @Override
+    public <E> List<E> getResult( final Charge<E> charge )
+        throws Exception
+    {
+        if ( charge.getAmmoFutures().isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        charge.awaitDone();
+
+        final ChargeState<E> state = getChargeState( charge );
+
+        final ChargeWrapper<E> failed = state.failed.get();
+
+        if ( failed != null )
+        {
+            // throws the unhandled exception
+            getDecidingResult( failed );
+        }
+
+        final ArrayList<E> result = new ArrayList<E>( quorum );
+
+        for ( int i = 0; i < quorum; i++ )
+        {
+            final ChargeWrapper<E> winner = state.winners.get( i );
+
+            // might be not filled, if quorum was not reached
+            if ( winner != null )
+            {
+                result.add( winner.getResult() );
+            }
+        }
+
+        return result;
+    }
+
+    // ==
+
+    @SuppressWarnings( "unchecked" )
+    private <E> ChargeState<E> getChargeState( final Charge<E> charge )
+    {
+        ChargeState<E> state = (ChargeState<E>) charge.getStrategyState();
+
+        if ( state == null )
+        {
+            state = new ChargeState<E>( quorum );
+
+            if ( !charge.compareAndSetStrategyState( null, state ) )
+            {
+                state = (ChargeState<E>) charge.getStrategyState();
+            }
+        }
+
+        return state;
+    }
+}
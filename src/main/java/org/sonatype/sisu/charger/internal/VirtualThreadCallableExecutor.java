@@ -0,0 +1,180 @@
+package org.sonatype.sisu.charger.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.sisu.charger.CallableExecutor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * CallableExecutor running every ammo on it's own virtual thread, meant for ammo doing blocking I/O. Parked virtual
+ * threads are cheap, so there is no pool to size, but optionally the count of concurrently running ammo might be
+ * capped: ammo over the cap waits (parked) for a permit. The charge machinery holds no monitors while waiting, so it
+ * does not pin the carrier threads.
+ * <p>
+ * Virtual threads are available on Java 21 and later only, on older Java this executor falls back to platform
+ * threads: a cached pool if not capped, or a fixed pool of cap size.
+ * <p>
+ * Being an {@link Executor} too, charges hand their ammo over as is, with no future allocated per ammo.
+ * 
+ * @author cstamas
+ */
+@Singleton
+@Named( "virtual" )
+public class VirtualThreadCallableExecutor
+    implements CallableExecutor, Executor
+{
+    private final ExecutorService executorService;
+
+    private final boolean virtual;
+
+    private final Semaphore permits;
+
+    /**
+     * Creates an executor with no cap on count of concurrently running ammo.
+     */
+    public VirtualThreadCallableExecutor()
+    {
+        this( 0 );
+    }
+
+    /**
+     * Creates an executor with cap on count of concurrently running ammo.
+     * 
+     * @param maxConcurrency the cap, or zero if not capped.
+     */
+    public VirtualThreadCallableExecutor( final int maxConcurrency )
+    {
+        Preconditions.checkArgument( maxConcurrency >= 0, "Concurrency cap must not be negative!" );
+
+        final ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+
+        if ( virtualThreadExecutor != null )
+        {
+            this.executorService = virtualThreadExecutor;
+            this.virtual = true;
+            this.permits = maxConcurrency > 0 ? new Semaphore( maxConcurrency ) : null;
+        }
+        else
+        {
+            final ThreadFactoryBuilder threadFactory =
+                new ThreadFactoryBuilder().setNameFormat( "charge-worker-%d" ).setDaemon( true );
+
+            this.executorService =
+                maxConcurrency > 0 ? Executors.newFixedThreadPool( maxConcurrency, threadFactory.build() )
+                    : Executors.newCachedThreadPool( threadFactory.build() );
+            this.virtual = false;
+            // pool size is the cap
+            this.permits = null;
+        }
+    }
+
+    /**
+     * Returns true if ammo runs on virtual threads, false if this executor fell back to platform threads.
+     * 
+     * @return
+     */
+    public boolean isVirtual()
+    {
+        return virtual;
+    }
+
+    @Override
+    public <T> Future<T> submit( final Callable<T> task )
+    {
+        Preconditions.checkNotNull( task );
+
+        if ( permits == null )
+        {
+            return executorService.submit( task );
+        }
+        else
+        {
+            return executorService.submit( new Callable<T>()
+            {
+                @Override
+                public T call()
+                    throws Exception
+                {
+                    permits.acquire();
+
+                    try
+                    {
+                        return task.call();
+                    }
+                    finally
+                    {
+                        permits.release();
+                    }
+                }
+            } );
+        }
+    }
+
+    @Override
+    public void execute( final Runnable command )
+    {
+        Preconditions.checkNotNull( command );
+
+        if ( permits == null )
+        {
+            executorService.execute( command );
+        }
+        else
+        {
+            executorService.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // the command must run once accepted, as there is nobody to report the interruption to
+                    permits.acquireUninterruptibly();
+
+                    try
+                    {
+                        command.run();
+                    }
+                    finally
+                    {
+                        permits.release();
+                    }
+                }
+            } );
+        }
+    }
+
+    /**
+     * Initiates an orderly shutdown, ammo already submitted is still executed.
+     */
+    public void shutdown()
+    {
+        executorService.shutdown();
+    }
+
+    // ==
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        try
+        {
+            final Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+
+            return (ExecutorService) factory.invoke( null );
+        }
+        catch ( Exception e )
+        {
+            // not on Java 21+
+            return null;
+        }
+    }
+}
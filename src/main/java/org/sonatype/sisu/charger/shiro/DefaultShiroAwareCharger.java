@@ -1,21 +1,57 @@
 package org.sonatype.sisu.charger.shiro;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.shiro.SecurityUtils;
+import org.sonatype.sisu.charger.ChargeListener;
+import org.sonatype.sisu.charger.ChargeOptions;
 import org.sonatype.sisu.charger.ChargeStrategy;
+import org.sonatype.sisu.charger.ExceptionHandler;
 import org.sonatype.sisu.charger.internal.Charge;
 import org.sonatype.sisu.charger.internal.DefaultCharger;
+import org.sonatype.sisu.charger.internal.LazyCharge;
 
 @Singleton
 @Named( "shiro" )
 public class DefaultShiroAwareCharger
     extends DefaultCharger
 {
+    public DefaultShiroAwareCharger()
+    {
+        super();
+    }
+
+    @Inject
+    public DefaultShiroAwareCharger( final List<ChargeListener> chargeListeners )
+    {
+        super( chargeListeners );
+    }
+
+    public DefaultShiroAwareCharger( final ChargeOptions options, final List<ChargeListener> chargeListeners )
+    {
+        super( options, chargeListeners );
+    }
+
     @Override
     protected <E> Charge<E> getChargeInstance( final ChargeStrategy strategy )
     {
         return new ShiroAwareCharge<E>( strategy, SecurityUtils.getSubject() );
     }
+
+    @Override
+    protected <E> LazyCharge<E> getLazyChargeInstance( final Iterator<? extends Callable<? extends E>> callables,
+                                                       final ExceptionHandler exceptionHandler, final int window )
+    {
+        final LazyCharge<E> charge = new LazyCharge<E>( callables, exceptionHandler, window );
+
+        charge.addContext( ShiroContextPropagator.INSTANCE, SecurityUtils.getSubject() );
+
+        return charge;
+    }
 }
@@ -1,14 +1,20 @@
 package org.sonatype.sisu.charger.shiro;
 
+import java.util.Arrays;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.shiro.subject.Subject;
 import org.sonatype.sisu.charger.ChargeStrategy;
 import org.sonatype.sisu.charger.ExceptionHandler;
+import org.sonatype.sisu.charger.KeyedCallable;
+import org.sonatype.sisu.charger.SimpleKeyedCallable;
 import org.sonatype.sisu.charger.internal.Charge;
 
 /**
- * Amount of parallel workload.
+ * Amount of parallel workload, executed as the given Subject. The Subject is bound around every execution of ammo (see
+ * {@link ShiroContextPropagator}), instead of wrapping every callable with it. Keyed ammo is keyed per Subject too, so
+ * results are never shared across Subjects.
  * 
  * @author cstamas
  * @param <E>
@@ -23,10 +29,23 @@ public class ShiroAwareCharge<E>
         super( strategy );
 
         this.subject = subject;
+
+        addContext( ShiroContextPropagator.INSTANCE, subject );
     }
 
-    public void addAmmo( final Callable<? extends E> callable, final ExceptionHandler exceptionHandler )
+    public void addAmmo( final Callable<? extends E> callable, final ExceptionHandler exceptionHandler,
+                         final long timeout, final TimeUnit unit, final String upstream )
     {
-        super.addAmmo( subject.associateWith( callable ), exceptionHandler );
+        if ( callable instanceof KeyedCallable )
+        {
+            // keep it keyed, but never share results across subjects
+            final Object key = Arrays.asList( subject.getPrincipal(), ( (KeyedCallable<?>) callable ).getKey() );
+
+            super.addAmmo( new SimpleKeyedCallable<E>( key, callable ), exceptionHandler, timeout, unit, upstream );
+        }
+        else
+        {
+            super.addAmmo( callable, exceptionHandler, timeout, unit, upstream );
+        }
     }
 }
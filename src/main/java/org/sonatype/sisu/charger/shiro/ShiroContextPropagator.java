@@ -0,0 +1,108 @@
+package org.sonatype.sisu.charger.shiro;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.support.DelegatingSubject;
+import org.apache.shiro.util.ThreadContext;
+import org.sonatype.sisu.charger.ContextPropagator;
+
+/**
+ * ContextPropagator of the Shiro Subject, binding it (and it's SecurityManager) to the executing thread the same way
+ * {@link Subject#associateWith(java.util.concurrent.Callable)} does, but with no wrapper allocated per ammo. Executing
+ * threads having nothing bound to them (as pooled workers usually do) are restored with no allocation at all.
+ * 
+ * @author cstamas
+ */
+public class ShiroContextPropagator
+    implements ContextPropagator<Subject>
+{
+    public static final ShiroContextPropagator INSTANCE = new ShiroContextPropagator();
+
+    /**
+     * The state of executing thread that had something bound to it.
+     */
+    private static final class Previous
+    {
+        private final Subject subject;
+
+        private final SecurityManager securityManager;
+
+        private Previous( final Subject subject, final SecurityManager securityManager )
+        {
+            this.subject = subject;
+            this.securityManager = securityManager;
+        }
+    }
+
+    @Override
+    public Subject capture()
+    {
+        return SecurityUtils.getSubject();
+    }
+
+    @Override
+    public Object bind( final Subject subject )
+    {
+        final Subject previousSubject = ThreadContext.getSubject();
+
+        final SecurityManager previousSecurityManager = ThreadContext.getSecurityManager();
+
+        SecurityManager securityManager = null;
+
+        if ( subject instanceof DelegatingSubject )
+        {
+            securityManager = ( (DelegatingSubject) subject ).getSecurityManager();
+        }
+
+        if ( securityManager == null )
+        {
+            securityManager = previousSecurityManager;
+        }
+
+        set( subject, securityManager );
+
+        if ( previousSubject == null && previousSecurityManager == null )
+        {
+            return null;
+        }
+
+        return new Previous( previousSubject, previousSecurityManager );
+    }
+
+    @Override
+    public void restore( final Object previous )
+    {
+        if ( previous == null )
+        {
+            set( null, null );
+        }
+        else
+        {
+            set( ( (Previous) previous ).subject, ( (Previous) previous ).securityManager );
+        }
+    }
+
+    // ==
+
+    private void set( final Subject subject, final SecurityManager securityManager )
+    {
+        if ( subject == null )
+        {
+            ThreadContext.unbindSubject();
+        }
+        else
+        {
+            ThreadContext.bind( subject );
+        }
+
+        if ( securityManager == null )
+        {
+            ThreadContext.unbindSecurityManager();
+        }
+        else
+        {
+            ThreadContext.bind( securityManager );
+        }
+    }
+}
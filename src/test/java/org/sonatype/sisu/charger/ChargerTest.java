@@ -6,21 +6,55 @@ import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.slf4j.MDC;
 import org.sonatype.guice.bean.containers.InjectedTestCase;
+import org.sonatype.sisu.charger.internal.AdaptiveCallableExecutor;
 import org.sonatype.sisu.charger.internal.AllArrivedChargeStrategy;
+import org.sonatype.sisu.charger.internal.BatchingCallableExecutor;
+import org.sonatype.sisu.charger.internal.Charge;
+import org.sonatype.sisu.charger.internal.ChargeWrapper;
+import org.sonatype.sisu.charger.internal.DefaultCharger;
 import org.sonatype.sisu.charger.internal.FirstArrivedChargeStrategy;
 import org.sonatype.sisu.charger.internal.FirstArrivedInOrderChargeStrategy;
+import org.sonatype.sisu.charger.internal.FixedHedgingDelay;
+import org.sonatype.sisu.charger.internal.HedgedCharge;
+import org.sonatype.sisu.charger.internal.HistogramChargeMetrics;
+import org.sonatype.sisu.charger.internal.NopExceptionHandler;
+import org.sonatype.sisu.charger.internal.PriorityCallableExecutor;
+import org.sonatype.sisu.charger.internal.QuorumChargeStrategy;
+import org.sonatype.sisu.charger.internal.VirtualThreadCallableExecutor;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class ChargerTest
     extends InjectedTestCase
@@ -634,4 +668,1858 @@ public class ChargerTest
 
         assertThat( result, Matchers.hasSize( 0 ) );
     }
+
+    @Test
+    public void testAllArrivedManyAmmo()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        for ( int i = 0; i < 500; i++ )
+        {
+            callables.add( ( i % 2 == 0 ) ? new HelloCallable( "Guest" + i )
+                : new BailingOutCallable<String>( i % 3 == 0 ) );
+        }
+
+        ChargeFuture<String> cf =
+            charger.submit( callables, AllArrivedChargeStrategy.INSTANCE, executorServiceProvider );
+
+        List<String> result = cf.getResult();
+
+        assertThat( cf.isDone(), Matchers.is( true ) );
+        assertThat( result, Matchers.hasSize( 250 ) );
+        assertThat( result.get( 0 ), Matchers.equalTo( "hello Guest0" ) );
+        assertThat( result.get( 249 ), Matchers.equalTo( "hello Guest498" ) );
+    }
+
+    @Test
+    public void testFirstArrivedLoserPolicyCancelRunning()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        Charge<String> charge = new Charge<String>( FirstArrivedChargeStrategy.INSTANCE );
+        charge.setLoserPolicy( LoserPolicy.CANCEL_RUNNING );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 4000, new HelloCallable( "Grumpy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 100, new HelloCallable( "Sneezy" ) ),
+            NopExceptionHandler.NOOP );
+
+        ExtendedChargeFuture<String> cf =
+            (ExtendedChargeFuture<String>) charger.submit( charge, executorServiceProvider );
+
+        List<String> result = cf.getResult();
+
+        assertThat( result, Matchers.hasItem( "hello Sneezy" ) );
+
+        // losers are reclaimed right after waiters are released
+        Thread.sleep( 200 );
+
+        assertThat( cf.getReclaimedCount(), Matchers.equalTo( 2 ) );
+        assertThat( charge.getAmmoFutures().get( 0 ).getFuture().isCancelled(), Matchers.is( true ) );
+        assertThat( charge.getAmmoFutures().get( 1 ).getFuture().isCancelled(), Matchers.is( true ) );
+    }
+
+    @Test
+    public void testAllArrivedDeadlineWithPartialResults()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        charge.setDeadlinePolicy( DeadlinePolicy.PARTIAL_RESULTS );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 100, new HelloCallable( "Grumpy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new HelloCallable( "Sneezy" ), NopExceptionHandler.NOOP );
+
+        final long submitted = System.currentTimeMillis();
+
+        ExtendedChargeFuture<String> cf =
+            (ExtendedChargeFuture<String>) charger.submit( charge, executorServiceProvider );
+
+        List<String> result = cf.getResult( 1000, TimeUnit.MILLISECONDS );
+
+        final long runtime = System.currentTimeMillis() - submitted;
+
+        assertThat( runtime, Matchers.lessThan( 1500L ) );
+        assertThat( result, Matchers.contains( "hello Grumpy", "hello Sneezy" ) );
+        assertThat( cf.getReclaimedCount(), Matchers.equalTo( 1 ) );
+        assertThat( charge.getAmmoFutures().get( 0 ).getFuture().isCancelled(), Matchers.is( true ) );
+    }
+
+    @Test
+    public void testFirstArrivedDeadlineFailing()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ) );
+        callables.add( new SleepingWrapperCallable<String>( 4000, new HelloCallable( "Grumpy" ) ) );
+        callables.add( new BailingOutCallable<String>( false ) );
+
+        ExtendedChargeFuture<String> cf =
+            (ExtendedChargeFuture<String>) charger.submit( callables, FirstArrivedChargeStrategy.INSTANCE,
+                executorServiceProvider );
+
+        try
+        {
+            cf.getResult( 500, TimeUnit.MILLISECONDS );
+
+            assertThat( "We need to get a TimeoutException!", false );
+        }
+        catch ( TimeoutException e )
+        {
+            // good
+        }
+
+        assertThat( cf.isDone(), Matchers.is( true ) );
+        assertThat( cf.getReclaimedCount(), Matchers.equalTo( 2 ) );
+    }
+
+    @Test
+    public void testListenerFiredOnCompletingWorker()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ) );
+        callables.add( new SleepingWrapperCallable<String>( 200, new HelloCallable( "Sneezy" ) ) );
+
+        final ExtendedChargeFuture<String> cf =
+            (ExtendedChargeFuture<String>) charger.submit( callables, FirstArrivedChargeStrategy.INSTANCE,
+                executorServiceProvider );
+
+        final CountDownLatch listenerDone = new CountDownLatch( 1 );
+        final List<String> listenerResult = new CopyOnWriteArrayList<String>();
+        final List<Thread> listenerThread = new CopyOnWriteArrayList<Thread>();
+
+        cf.addListener( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    listenerThread.add( Thread.currentThread() );
+                    listenerResult.addAll( cf.getResult() );
+                }
+                catch ( Exception e )
+                {
+                    // result list stays empty
+                }
+                finally
+                {
+                    listenerDone.countDown();
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor() );
+
+        assertThat( cf.isDone(), Matchers.is( false ) );
+        assertThat( listenerDone.await( 2, TimeUnit.SECONDS ), Matchers.is( true ) );
+        assertThat( listenerResult, Matchers.contains( "hello Sneezy" ) );
+        assertThat( listenerThread.get( 0 ), Matchers.not( Matchers.sameInstance( Thread.currentThread() ) ) );
+
+        // listeners added after charge is done are run immediately
+        final CountDownLatch lateListenerDone = new CountDownLatch( 1 );
+        cf.addListener( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                lateListenerDone.countDown();
+            }
+        }, MoreExecutors.sameThreadExecutor() );
+
+        assertThat( lateListenerDone.getCount(), Matchers.equalTo( 0L ) );
+    }
+
+    @Test
+    public void testLosersReclaimedBeforeListeners()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        final Charge<String> charge = new Charge<String>( FirstArrivedChargeStrategy.INSTANCE );
+        charge.setLoserPolicy( LoserPolicy.CANCEL_RUNNING );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 100, new HelloCallable( "Sneezy" ) ),
+            NopExceptionHandler.NOOP );
+
+        final CountDownLatch listenerDone = new CountDownLatch( 1 );
+        final AtomicInteger reclaimedBeforeListener = new AtomicInteger( -1 );
+
+        // a listener run by the completing worker sees the losers reclaimed already
+        charge.addListener( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                reclaimedBeforeListener.set( charge.getReclaimedCount() );
+
+                listenerDone.countDown();
+            }
+        }, MoreExecutors.sameThreadExecutor() );
+
+        charger.submit( charge, executorServiceProvider );
+
+        assertThat( listenerDone.await( 2, TimeUnit.SECONDS ), Matchers.is( true ) );
+        assertThat( reclaimedBeforeListener.get(), Matchers.equalTo( 1 ) );
+    }
+
+    @Test
+    public void testListenableChargeFuture()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new SleepingWrapperCallable<String>( 200, new HelloCallable( "Sleepy" ) ) );
+        callables.add( new HelloCallable( "Sneezy" ) );
+
+        ListenableFuture<List<String>> lf =
+            ListenableChargeFuture.adapt( (ExtendedChargeFuture<String>) charger.submit( callables,
+                AllArrivedChargeStrategy.INSTANCE, executorServiceProvider ) );
+
+        ListenableFuture<Integer> sizeFuture = Futures.transform( lf, new Function<List<String>, Integer>()
+        {
+            @Override
+            public Integer apply( final List<String> input )
+            {
+                return input.size();
+            }
+        } );
+
+        assertThat( sizeFuture.get( 2, TimeUnit.SECONDS ), Matchers.equalTo( 2 ) );
+
+        List<Callable<String>> failing = new ArrayList<Callable<String>>();
+        failing.add( new FailingCallable<String>( new IOException( "I failed!" ) ) );
+
+        lf =
+            ListenableChargeFuture.adapt( (ExtendedChargeFuture<String>) charger.submit( failing,
+                AllArrivedChargeStrategy.INSTANCE, executorServiceProvider ) );
+
+        try
+        {
+            lf.get( 2, TimeUnit.SECONDS );
+
+            assertThat( "We need to get an IOException!", false );
+        }
+        catch ( ExecutionException e )
+        {
+            assertThat( e.getCause(), Matchers.instanceOf( IOException.class ) );
+        }
+
+        List<Callable<String>> sleepy = new ArrayList<Callable<String>>();
+        sleepy.add( new SleepingWrapperCallable<String>( 2000, new HelloCallable( "Sleepy" ) ) );
+
+        ExtendedChargeFuture<String> cf =
+            (ExtendedChargeFuture<String>) charger.submit( sleepy, AllArrivedChargeStrategy.INSTANCE,
+                executorServiceProvider );
+
+        lf = ListenableChargeFuture.adapt( cf );
+
+        assertThat( cf.cancel( true ), Matchers.is( true ) );
+        assertThat( cf.isCancelled(), Matchers.is( true ) );
+        assertThat( lf.isCancelled(), Matchers.is( true ) );
+
+        cf =
+            (ExtendedChargeFuture<String>) charger.submit( sleepy, AllArrivedChargeStrategy.INSTANCE,
+                executorServiceProvider );
+
+        lf = ListenableChargeFuture.adapt( cf );
+
+        assertThat( lf.cancel( true ), Matchers.is( true ) );
+        assertThat( lf.isCancelled(), Matchers.is( true ) );
+        assertThat( cf.isCancelled(), Matchers.is( true ) );
+    }
+
+    @Test
+    public void testResultStreamInArrivalOrder()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new SleepingWrapperCallable<String>( 1000, new HelloCallable( "Sleepy" ) ) );
+        callables.add( new SleepingWrapperCallable<String>( 500, new HelloCallable( "Grumpy" ) ) );
+        callables.add( new ExceptionHandlingCallable<String>( new FailingCallable<String>( new IOException(
+            "I am handled!" ) ), new SimpleExceptionHandler( IOException.class ) ) );
+        callables.add( new HelloCallable( "Sneezy" ) );
+
+        ExtendedChargeFuture<String> cf =
+            (ExtendedChargeFuture<String>) charger.submit( callables, AllArrivedChargeStrategy.INSTANCE,
+                executorServiceProvider );
+
+        final long submitted = System.currentTimeMillis();
+
+        ResultStream<String> stream = cf.getResultStream();
+
+        IndexedResult<String> first = stream.next();
+        assertThat( first.getIndex(), Matchers.equalTo( 3 ) );
+        assertThat( first.getResult(), Matchers.equalTo( "hello Sneezy" ) );
+        assertThat( System.currentTimeMillis() - submitted, Matchers.lessThan( 400L ) );
+
+        IndexedResult<String> second = stream.next();
+        assertThat( second.getIndex(), Matchers.equalTo( 1 ) );
+        assertThat( cf.isDone(), Matchers.is( false ) );
+
+        try
+        {
+            stream.next( 100, TimeUnit.MILLISECONDS );
+
+            assertThat( "We need to get a TimeoutException!", false );
+        }
+        catch ( TimeoutException e )
+        {
+            // good
+        }
+
+        IndexedResult<String> third = stream.next();
+        assertThat( third.getIndex(), Matchers.equalTo( 0 ) );
+        assertThat( stream.next(), Matchers.nullValue() );
+
+        // a new stream replays all arrived payloads
+        assertThat( cf.getResultStream().next().getIndex(), Matchers.equalTo( 3 ) );
+    }
+
+    @Test
+    public void testQuorumStrategy()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ) );
+        callables.add( new SleepingWrapperCallable<String>( 4000, new HelloCallable( "Grumpy" ) ) );
+        callables.add( new SleepingWrapperCallable<String>( 300, new HelloCallable( "Sneezy" ) ) );
+        callables.add( new BailingOutCallable<String>( false ) );
+        callables.add( new SleepingWrapperCallable<String>( 100, new HelloCallable( "Happy" ) ) );
+
+        final long submitted = System.currentTimeMillis();
+
+        ChargeFuture<String> cf =
+            charger.submit( callables, new QuorumChargeStrategy( 2 ), executorServiceProvider );
+
+        List<String> result = cf.getResult();
+
+        final long runtime = System.currentTimeMillis() - submitted;
+
+        assertThat( result, Matchers.contains( "hello Happy", "hello Sneezy" ) );
+        assertThat( runtime, Matchers.lessThan( 1000L ) );
+    }
+
+    @Test
+    public void testQuorumStrategyNotReachable()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ) );
+        callables.add( new SleepingWrapperCallable<String>( 100, new BailingOutCallable<String>( true ) ) );
+        callables.add( new HelloCallable( "Happy" ) );
+        callables.add( new BailingOutCallable<String>( false ) );
+
+        final long submitted = System.currentTimeMillis();
+
+        ChargeFuture<String> cf =
+            charger.submit( callables, new QuorumChargeStrategy( 3 ), executorServiceProvider );
+
+        List<String> result = cf.getResult();
+
+        final long runtime = System.currentTimeMillis() - submitted;
+
+        assertThat( result, Matchers.contains( "hello Happy" ) );
+        assertThat( runtime, Matchers.lessThan( 1000L ) );
+    }
+
+    @Test
+    public void testQuorumStrategyFewerThanQuorum()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new SleepingWrapperCallable<String>( 300, new HelloCallable( "Sleepy" ) ) );
+        callables.add( new BailingOutCallable<String>( false ) );
+        callables.add( new HelloCallable( "Happy" ) );
+
+        final long submitted = System.currentTimeMillis();
+
+        ChargeFuture<String> cf =
+            charger.submit( callables, new QuorumChargeStrategy( 5 ), executorServiceProvider );
+
+        List<String> result = cf.getResult();
+
+        final long runtime = System.currentTimeMillis() - submitted;
+
+        // quorum of 5 is not reachable with 3: done when all arrived, not on the first arrival
+        assertThat( result, Matchers.contains( "hello Happy", "hello Sleepy" ) );
+        assertThat( runtime, Matchers.greaterThanOrEqualTo( 300L ) );
+    }
+
+    @Test
+    public void testHedgedCharge()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        HedgedCharge<String> charge =
+            new HedgedCharge<String>( new FixedHedgingDelay( 300, TimeUnit.MILLISECONDS ) );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 2000, new HelloCallable( "Sleepy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new BailingOutCallable<String>( false ), NopExceptionHandler.NOOP );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 100, new HelloCallable( "Sneezy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new HelloCallable( "Never launched" ), NopExceptionHandler.NOOP );
+
+        // chargers set no admission control on the charges they assemble, that is fine, but no other one
+        charge.setAdmissionControl( null );
+
+        try
+        {
+            charge.setAdmissionControl( new AdmissionControl( 10, 10 ) );
+
+            assertThat( "Admission control should be refused!", false );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // good
+        }
+
+        final long submitted = System.currentTimeMillis();
+
+        ChargeFuture<String> cf = charger.submit( charge, executorServiceProvider );
+
+        List<String> result = cf.getResult();
+
+        final long runtime = System.currentTimeMillis() - submitted;
+
+        // Sleepy at 0, the bailing out one at 300ms, and Sneezy right after it, delivering at 400ms
+        assertThat( result, Matchers.contains( "hello Sneezy" ) );
+        assertThat( runtime, Matchers.allOf( Matchers.greaterThanOrEqualTo( 400L ), Matchers.lessThan( 1000L ) ) );
+        assertThat( charge.getLaunchedCount(), Matchers.equalTo( 3 ) );
+
+        // losers are reclaimed after the waiters are released
+        Thread.sleep( 200 );
+
+        // never launched one is abandoned even with loser policy NONE, so it does arrive, without a payload
+        assertThat( charge.getAmmoFutures().get( 3 ).isDone(), Matchers.is( true ) );
+        assertThat( charge.getAmmoFutures().get( 3 ).getFailure(), Matchers.instanceOf( InterruptedException.class ) );
+    }
+
+    @Test
+    public void testVirtualThreadCallableExecutor()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        CallableExecutor virtual = lookup( CallableExecutor.class, "virtual" );
+
+        assertThat( virtual, Matchers.instanceOf( VirtualThreadCallableExecutor.class ) );
+
+        // on the JDKs this is built and tested with (6 to 8) there are no virtual threads, so this exercises the
+        // fallback pools; on Java 21 and later it exercises the virtual threads and the permits capping them
+        final VirtualThreadCallableExecutor capped = new VirtualThreadCallableExecutor( 3 );
+
+        assertThat( capped.isVirtual(), Matchers.is( ( (VirtualThreadCallableExecutor) virtual ).isVirtual() ) );
+
+        final AtomicInteger running = new AtomicInteger( 0 );
+        final AtomicInteger maxRunning = new AtomicInteger( 0 );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        for ( int i = 0; i < 20; i++ )
+        {
+            final String name = "Guest" + i;
+
+            callables.add( new Callable<String>()
+            {
+                @Override
+                public String call()
+                    throws Exception
+                {
+                    final int now = running.incrementAndGet();
+
+                    while ( true )
+                    {
+                        final int max = maxRunning.get();
+
+                        if ( now <= max || maxRunning.compareAndSet( max, now ) )
+                        {
+                            break;
+                        }
+                    }
+
+                    Thread.sleep( 20 );
+
+                    running.decrementAndGet();
+
+                    return "hello " + name;
+                }
+            } );
+        }
+
+        ChargeFuture<String> cf =
+            charger.submit( callables, AllArrivedChargeStrategy.INSTANCE, capped );
+
+        assertThat( cf.getResult(), Matchers.hasSize( 20 ) );
+        assertThat( maxRunning.get(), Matchers.lessThanOrEqualTo( 3 ) );
+
+        capped.shutdown();
+
+        cf = charger.submit( callables, FirstArrivedChargeStrategy.INSTANCE, virtual );
+
+        assertThat( cf.getResult(), Matchers.hasSize( 1 ) );
+    }
+
+    @Test
+    public void testNestedChargesWithWaitPolicyHelp()
+        throws Exception
+    {
+        final Charger charger = lookup( Charger.class );
+
+        final ExecutorService pool = Executors.newFixedThreadPool( 2 );
+
+        try
+        {
+            final CallableExecutor bounded = new CallableExecutor()
+            {
+                @Override
+                public <T> Future<T> submit( final Callable<T> task )
+                {
+                    return pool.submit( task );
+                }
+            };
+
+            // 3 levels of nested charges of 3 ammo each, every waiting thread is a thread of the pool of 2
+            final NestedCallable root = new NestedCallable( charger, bounded, 3 );
+
+            final Charge<Integer> charge = new Charge<Integer>( AllArrivedChargeStrategy.INSTANCE );
+            charge.setWaitPolicy( WaitPolicy.HELP );
+            charge.addAmmo( root, NopExceptionHandler.NOOP );
+
+            charger.submit( charge, bounded );
+
+            final List<Integer> result = charge.getResult( 10, TimeUnit.SECONDS );
+
+            assertThat( result, Matchers.contains( 27 ) );
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAdmissionControlRejectsWholeCharge()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        AdmissionControl admissionControl = new AdmissionControl( 2, 2 );
+
+        Charge<String> busy = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        busy.setAdmissionControl( admissionControl );
+        busy.addAmmo( new SleepingWrapperCallable<String>( 500, new HelloCallable( "Sleepy" ) ),
+            NopExceptionHandler.NOOP );
+        busy.addAmmo( new SleepingWrapperCallable<String>( 500, new HelloCallable( "Grumpy" ) ),
+            NopExceptionHandler.NOOP );
+
+        ChargeFuture<String> busyFuture = charger.submit( busy, executorServiceProvider );
+
+        assertThat( admissionControl.getAvailableSlots(), Matchers.equalTo( 0 ) );
+
+        Charge<String> rejected = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        rejected.setAdmissionControl( admissionControl );
+        rejected.addAmmo( new HelloCallable( "Sneezy" ), NopExceptionHandler.NOOP );
+
+        try
+        {
+            charger.submit( rejected, executorServiceProvider );
+
+            assertThat( "Charge should be rejected", false );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // good
+        }
+
+        // nothing was submitted
+        assertThat( rejected.isDone(), Matchers.is( false ) );
+        assertThat( rejected.getAmmoFutures().get( 0 ).getFuture(), Matchers.nullValue() );
+
+        assertThat( busyFuture.getResult(), Matchers.hasSize( 2 ) );
+
+        // slots are released right after the waiters are released
+        Thread.sleep( 100 );
+
+        assertThat( admissionControl.getAvailableSlots(), Matchers.equalTo( 2 ) );
+
+        // might be executed again, once there is capacity
+        assertThat( charger.submit( rejected, executorServiceProvider ).getResult(),
+            Matchers.contains( "hello Sneezy" ) );
+    }
+
+    @Test
+    public void testAdmissionControlPerChargeLimit()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        AdmissionControl admissionControl = new AdmissionControl( 10, 2, 1, TimeUnit.SECONDS );
+
+        final AtomicInteger running = new AtomicInteger( 0 );
+        final AtomicInteger maxRunning = new AtomicInteger( 0 );
+
+        Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        charge.setAdmissionControl( admissionControl );
+
+        for ( int i = 0; i < 6; i++ )
+        {
+            final String name = "Guest" + i;
+
+            charge.addAmmo( new Callable<String>()
+            {
+                @Override
+                public String call()
+                    throws Exception
+                {
+                    final int now = running.incrementAndGet();
+
+                    while ( true )
+                    {
+                        final int max = maxRunning.get();
+
+                        if ( now <= max || maxRunning.compareAndSet( max, now ) )
+                        {
+                            break;
+                        }
+                    }
+
+                    Thread.sleep( 50 );
+
+                    running.decrementAndGet();
+
+                    return "hello " + name;
+                }
+            }, NopExceptionHandler.NOOP );
+        }
+
+        ChargeFuture<String> cf = charger.submit( charge, executorServiceProvider );
+
+        assertThat( admissionControl.getAvailableSlots(), Matchers.equalTo( 8 ) );
+
+        List<String> result = cf.getResult();
+
+        assertThat( result, Matchers.hasSize( 6 ) );
+        assertThat( result.get( 5 ), Matchers.equalTo( "hello Guest5" ) );
+        assertThat( maxRunning.get(), Matchers.lessThanOrEqualTo( 2 ) );
+
+        Thread.sleep( 100 );
+
+        assertThat( admissionControl.getAvailableSlots(), Matchers.equalTo( 10 ) );
+    }
+
+    @Test
+    public void testRejectionHalfwayCancelsWholeCharge()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        final AtomicInteger submitted = new AtomicInteger( 0 );
+
+        final CallableExecutor rejectingExecutor = new CallableExecutor()
+        {
+            @Override
+            public <T> Future<T> submit( final Callable<T> task )
+            {
+                if ( submitted.incrementAndGet() > 2 )
+                {
+                    throw new RejectedExecutionException( "Full!" );
+                }
+
+                return executorServiceProvider.submit( task );
+            }
+        };
+
+        Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            charge.addAmmo( new SleepingWrapperCallable<String>( 5000, new HelloCallable( "Guest" + i ) ),
+                NopExceptionHandler.NOOP );
+        }
+
+        try
+        {
+            charger.submit( charge, rejectingExecutor );
+
+            assertThat( "Charge should be rejected", false );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // good
+        }
+
+        assertThat( charge.isDone(), Matchers.is( true ) );
+        assertThat( charge.cancel( true ), Matchers.is( false ) );
+
+        // running ones are interrupted, and all of them arrive
+        Thread.sleep( 200 );
+
+        assertThat( charge.getCompletedCount(), Matchers.equalTo( 4 ) );
+    }
+
+    @Test
+    public void testRejectionAfterDecisionAbandonsRest()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        final AtomicInteger submitted = new AtomicInteger( 0 );
+
+        // runs the first one in place, deciding the charge, and rejects the rest
+        final CallableExecutor rejectingExecutor = new CallableExecutor()
+        {
+            @Override
+            public <T> Future<T> submit( final Callable<T> task )
+            {
+                if ( submitted.incrementAndGet() > 1 )
+                {
+                    throw new RejectedExecutionException( "Full!" );
+                }
+
+                final FutureTask<T> future = new FutureTask<T>( task );
+
+                future.run();
+
+                return future;
+            }
+        };
+
+        Charge<String> charge = new Charge<String>( FirstArrivedChargeStrategy.INSTANCE );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            charge.addAmmo( new HelloCallable( "Guest" + i ), NopExceptionHandler.NOOP );
+        }
+
+        try
+        {
+            charger.submit( charge, rejectingExecutor );
+
+            assertThat( "Charge should be rejected", false );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // good
+        }
+
+        assertThat( charge.isDone(), Matchers.is( true ) );
+        assertThat( charge.isCancelled(), Matchers.is( false ) );
+
+        // the rejected one and the one never submitted arrive too, so the stream ends
+        assertThat( charge.getCompletedCount(), Matchers.equalTo( 3 ) );
+
+        ResultStream<String> stream = charge.getResultStream();
+
+        assertThat( stream.next().getResult(), Matchers.equalTo( "hello Guest0" ) );
+        assertThat( stream.next(), Matchers.nullValue() );
+    }
+
+    @Test
+    public void testBatchingCallableExecutor()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        BatchingCallableExecutor batchingExecutor = new BatchingCallableExecutor( 4 );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        for ( int i = 0; i < 500; i++ )
+        {
+            callables.add( new HelloCallable( "Guest" + i ) );
+        }
+
+        ChargeFuture<String> cf =
+            charger.submit( callables, AllArrivedChargeStrategy.INSTANCE, batchingExecutor );
+
+        List<String> result = cf.getResult();
+
+        assertThat( result, Matchers.hasSize( 500 ) );
+        assertThat( result.get( 0 ), Matchers.equalTo( "hello Guest0" ) );
+        assertThat( result.get( 499 ), Matchers.equalTo( "hello Guest499" ) );
+
+        // single tasks take the fast path
+        assertThat( batchingExecutor.submit( new HelloCallable( "Single" ) ).get( 2, TimeUnit.SECONDS ),
+            Matchers.equalTo( "hello Single" ) );
+
+        batchingExecutor.shutdown();
+
+        assertThat( batchingExecutor.awaitTermination( 2, TimeUnit.SECONDS ), Matchers.is( true ) );
+        assertThat( batchingExecutor.isTerminated(), Matchers.is( true ) );
+
+        try
+        {
+            charger.submit( callables, AllArrivedChargeStrategy.INSTANCE, batchingExecutor );
+
+            assertThat( "Charge should be rejected", false );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // good
+        }
+    }
+
+    @Test
+    public void testLazyChargeWithinWindow()
+        throws Exception
+    {
+        LazyCharger charger = lookup( LazyCharger.class );
+
+        final AtomicInteger pulled = new AtomicInteger( 0 );
+        final AtomicInteger taken = new AtomicInteger( 0 );
+        final AtomicInteger maxAlive = new AtomicInteger( 0 );
+
+        // a huge charge, never materialized
+        Iterator<Callable<String>> callables = new Iterator<Callable<String>>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return pulled.get() < 1000;
+            }
+
+            @Override
+            public Callable<String> next()
+            {
+                final int alive = pulled.incrementAndGet() - taken.get();
+
+                while ( true )
+                {
+                    final int max = maxAlive.get();
+
+                    if ( alive <= max || maxAlive.compareAndSet( max, alive ) )
+                    {
+                        break;
+                    }
+                }
+
+                return new HelloCallable( "Guest" + pulled.get() );
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        LazyChargeFuture<String> cf =
+            charger.submit( callables, NopExceptionHandler.NOOP, 8, executorServiceProvider );
+
+        ResultStream<String> stream = cf.getResultStream();
+
+        IndexedResult<String> result;
+
+        while ( ( result = stream.next( 5, TimeUnit.SECONDS ) ) != null )
+        {
+            assertThat( result.getResult(), Matchers.startsWith( "hello Guest" ) );
+
+            taken.incrementAndGet();
+        }
+
+        assertThat( cf.isDone(), Matchers.is( true ) );
+        assertThat( taken.get(), Matchers.equalTo( 1000 ) );
+        assertThat( cf.getCompletedCount(), Matchers.equalTo( 1000 ) );
+        // pulled ones, less the ones taken from stream: never more than window (plus the one being pulled)
+        assertThat( maxAlive.get(), Matchers.lessThanOrEqualTo( 9 ) );
+    }
+
+    @Test
+    public void testLazyChargeDrainFailing()
+        throws Exception
+    {
+        LazyCharger charger = lookup( LazyCharger.class );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            callables.add( new HelloCallable( "Guest" + i ) );
+        }
+        callables.add( new FailingCallable<String>( new IOException( "I failed!" ) ) );
+        for ( int i = 0; i < 50; i++ )
+        {
+            callables.add( new HelloCallable( "Guest" + i ) );
+        }
+
+        LazyChargeFuture<String> cf =
+            charger.submit( callables.iterator(), NopExceptionHandler.NOOP, 4, executorServiceProvider );
+
+        try
+        {
+            cf.drain();
+
+            assertThat( "We need to get an IOException!", false );
+        }
+        catch ( IOException e )
+        {
+            // good
+        }
+
+        assertThat( cf.isDone(), Matchers.is( true ) );
+        // pulling stopped on failure
+        assertThat( cf.getLaunchedCount(), Matchers.lessThan( 101 ) );
+    }
+
+    @Test
+    public void testLazyChargeRejectsUnsupportedSettings()
+        throws Exception
+    {
+        DefaultCharger charger =
+            new DefaultCharger( new ChargeOptions.Builder().setMetrics( new HistogramChargeMetrics() ).build() );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+        callables.add( new HelloCallable( "Happy" ) );
+
+        try
+        {
+            charger.submit( callables.iterator(), NopExceptionHandler.NOOP, 4, executorServiceProvider );
+
+            assertThat( "Lazy charge should be rejected!", false );
+        }
+        catch ( IllegalStateException e )
+        {
+            // good
+        }
+
+        charger = new DefaultCharger();
+
+        assertThat( charger.submit( callables.iterator(), NopExceptionHandler.NOOP, 4, executorServiceProvider )
+            .getResultStream().next().getResult(), Matchers.equalTo( "hello Happy" ) );
+    }
+
+    @Test
+    public void testChargeMetrics()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        HistogramChargeMetrics metrics = new HistogramChargeMetrics();
+
+        Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        charge.setName( "greetings" );
+        charge.setMetrics( metrics );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 100, new HelloCallable( "Sleepy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 200, new HelloCallable( "Grumpy" ) ),
+            NopExceptionHandler.NOOP );
+        charge.addAmmo( new HelloCallable( "Sneezy" ), NopExceptionHandler.NOOP );
+
+        assertThat( charger.submit( charge, executorServiceProvider ).getResult(), Matchers.hasSize( 3 ) );
+
+        assertThat( metrics.getHistograms( null, AllArrivedChargeStrategy.class ), Matchers.nullValue() );
+
+        HistogramChargeMetrics.HistogramRecorder histograms =
+            metrics.getHistograms( "greetings", AllArrivedChargeStrategy.class );
+
+        assertThat( histograms.getQueueWait().getCount(), Matchers.equalTo( 3L ) );
+        assertThat( histograms.getExecution().getCount(), Matchers.equalTo( 3L ) );
+        assertThat( histograms.getExecution().getPercentile( 100, TimeUnit.MILLISECONDS ),
+            Matchers.greaterThanOrEqualTo( 200L ) );
+        assertThat( histograms.getResultWait().getCount(), Matchers.equalTo( 1L ) );
+        assertThat( histograms.getResultWait().getMean( TimeUnit.MILLISECONDS ),
+            Matchers.greaterThanOrEqualTo( 150L ) );
+
+        ChargeWrapper<String> grumpy = charge.getAmmoFutures().get( 1 );
+
+        assertThat( grumpy.getFinishedAt() - grumpy.getStartedAt(),
+            Matchers.greaterThanOrEqualTo( TimeUnit.MILLISECONDS.toNanos( 200 ) ) );
+    }
+
+    @Test
+    public void testChargeListener()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        RecordingChargeListener listener = (RecordingChargeListener) lookup( ChargeListener.class, "recording" );
+
+        List<Callable<String>> callables = new ArrayList<Callable<String>>();
+
+        callables.add( new HelloCallable( "Jason" ) );
+        callables.add( new FailingCallable<String>( new IOException( "I failed!" ) ) );
+
+        ChargeFuture<String> cf =
+            charger.submit( callables, new SimpleExceptionHandler( IOException.class ),
+                AllArrivedChargeStrategy.INSTANCE, executorServiceProvider );
+
+        assertThat( cf.getResult(), Matchers.contains( "hello Jason" ) );
+
+        // decision is announced right after the waiters are released
+        Thread.sleep( 100 );
+
+        assertThat( listener.getEvents(),
+            Matchers.containsInAnyOrder( "submitted", "finished0", "failed1", "decided" ) );
+        assertThat( listener.getEvents().get( 0 ), Matchers.equalTo( "submitted" ) );
+        assertThat( listener.getEvents().get( 3 ), Matchers.equalTo( "decided" ) );
+    }
+
+    @Test
+    public void testSingleFlight()
+        throws Exception
+    {
+        // off by default
+        assertThat( ( (DefaultCharger) lookup( Charger.class ) ).getOptions().getSingleFlight(), Matchers.nullValue() );
+
+        DefaultCharger charger =
+            new DefaultCharger( new ChargeOptions.Builder().setSingleFlight( new SingleFlight() ).build() );
+
+        final AtomicInteger executions = new AtomicInteger( 0 );
+
+        final Callable<String> fetch = new SleepingWrapperCallable<String>( 300, new HelloCallable( "metadata" ) );
+
+        Callable<String> counting = new Callable<String>()
+        {
+            @Override
+            public String call()
+                throws Exception
+            {
+                executions.incrementAndGet();
+
+                return fetch.call();
+            }
+        };
+
+        List<Callable<String>> first = new ArrayList<Callable<String>>();
+        first.add( new SimpleKeyedCallable<String>( "maven-metadata.xml", counting ) );
+
+        List<Callable<String>> second = new ArrayList<Callable<String>>();
+        second.add( new SimpleKeyedCallable<String>( "maven-metadata.xml", counting ) );
+
+        ChargeFuture<String> cf1 =
+            charger.submit( first, AllArrivedChargeStrategy.INSTANCE, executorServiceProvider );
+
+        Thread.sleep( 100 );
+
+        ChargeFuture<String> cf2 =
+            charger.submit( second, AllArrivedChargeStrategy.INSTANCE, executorServiceProvider );
+
+        assertThat( cf1.getResult(), Matchers.contains( "hello metadata" ) );
+        assertThat( cf2.getResult(), Matchers.contains( "hello metadata" ) );
+        assertThat( executions.get(), Matchers.equalTo( 1 ) );
+        assertThat( charger.getOptions().getSingleFlight().getCoalescedCount(), Matchers.equalTo( 1L ) );
+
+        // nothing is cached once the flight landed
+        ChargeFuture<String> cf3 =
+            charger.submit( second, AllArrivedChargeStrategy.INSTANCE, executorServiceProvider );
+
+        assertThat( cf3.getResult(), Matchers.contains( "hello metadata" ) );
+        assertThat( executions.get(), Matchers.equalTo( 2 ) );
+    }
+
+    @Test
+    public void testSingleFlightFollowerInterrupted()
+        throws Exception
+    {
+        final SingleFlight singleFlight = new SingleFlight();
+
+        final KeyedCallable<String> fetch =
+            new SimpleKeyedCallable<String>( "maven-metadata.xml", new SleepingWrapperCallable<String>( 1000,
+                new HelloCallable( "metadata" ) ) );
+
+        final ExecutorService leaderExecutor = Executors.newSingleThreadExecutor();
+
+        try
+        {
+            final Future<String> leader = leaderExecutor.submit( new Callable<String>()
+            {
+                @Override
+                public String call()
+                    throws Exception
+                {
+                    return singleFlight.call( fetch );
+                }
+            } );
+
+            Thread.sleep( 100 );
+
+            final AtomicReference<Exception> followerFailure = new AtomicReference<Exception>();
+
+            final Thread follower = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        singleFlight.call( fetch );
+                    }
+                    catch ( Exception e )
+                    {
+                        followerFailure.set( e );
+                    }
+                }
+            } );
+
+            follower.start();
+
+            Thread.sleep( 100 );
+
+            // the follower bails out with it's own interruption, the leader does not notice
+            follower.interrupt();
+            follower.join( 500 );
+
+            assertThat( follower.isAlive(), Matchers.is( false ) );
+            assertThat( followerFailure.get(), Matchers.instanceOf( InterruptedException.class ) );
+            assertThat( leader.get(), Matchers.equalTo( "hello metadata" ) );
+        }
+        finally
+        {
+            leaderExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResultCache()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        final AtomicInteger executions = new AtomicInteger( 0 );
+
+        Callable<String> counting = new Callable<String>()
+        {
+            @Override
+            public String call()
+                throws Exception
+            {
+                executions.incrementAndGet();
+
+                return "hello metadata";
+            }
+        };
+
+        Callable<String> failing = new Callable<String>()
+        {
+            @Override
+            public String call()
+                throws Exception
+            {
+                executions.incrementAndGet();
+
+                throw new IOException( "Not found!" );
+            }
+        };
+
+        final AtomicInteger handled = new AtomicInteger( 0 );
+
+        final ExceptionHandler notFoundHandler = new ExceptionHandler()
+        {
+            @Override
+            public boolean handle( final Exception ex )
+            {
+                handled.incrementAndGet();
+
+                return ex instanceof IOException;
+            }
+        };
+
+        ResultCache resultCache = new ResultCache( 10, 1, 1, TimeUnit.SECONDS );
+
+        CallableExecutor rejecting = new CallableExecutor()
+        {
+            @Override
+            public <T> Future<T> submit( final Callable<T> task )
+            {
+                throw new RejectedExecutionException( "Cache hits are not scheduled!" );
+            }
+        };
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+            charge.setResultCache( resultCache );
+            charge.addAmmo( new SimpleKeyedCallable<String>( "maven-metadata.xml", counting ),
+                NopExceptionHandler.NOOP );
+            charge.addAmmo( new SimpleKeyedCallable<String>( "missing.pom", failing ), notFoundHandler );
+
+            ChargeFuture<String> cf =
+                charger.submit( charge, i == 0 ? executorServiceProvider : rejecting );
+
+            assertThat( cf.getResult(), Matchers.contains( "hello metadata" ) );
+        }
+
+        assertThat( executions.get(), Matchers.equalTo( 2 ) );
+        assertThat( resultCache.getHitCount(), Matchers.equalTo( 4L ) );
+        assertThat( resultCache.get( "missing.pom" ).isNegative(), Matchers.equalTo( true ) );
+        // once per charge, caching the failure did not ask the handler again
+        assertThat( handled.get(), Matchers.equalTo( 3 ) );
+
+        // null payloads are negative outcomes
+        resultCache.put( "empty.pom", null );
+
+        assertThat( resultCache.get( "empty.pom" ).isNegative(), Matchers.equalTo( true ) );
+
+        resultCache.invalidate( "empty.pom" );
+
+        resultCache.invalidate( "maven-metadata.xml" );
+
+        assertThat( resultCache.get( "maven-metadata.xml" ), Matchers.nullValue() );
+        assertThat( resultCache.size(), Matchers.equalTo( 1 ) );
+
+        // expiring and evicting
+        ResultCache small = new ResultCache( 2, 100, TimeUnit.MILLISECONDS );
+        small.put( "a", "A" );
+        small.put( "b", "B" );
+        small.get( "a" );
+        small.put( "c", "C" );
+        small.putNegative( "d", new IOException( "Not cached!" ) );
+        small.put( "e", null );
+
+        assertThat( small.get( "b" ), Matchers.nullValue() );
+        assertThat( small.get( "a" ).getPayload(), Matchers.equalTo( (Object) "A" ) );
+        assertThat( small.get( "d" ), Matchers.nullValue() );
+        assertThat( small.get( "e" ), Matchers.nullValue() );
+
+        Thread.sleep( 150 );
+
+        assertThat( small.get( "a" ), Matchers.nullValue() );
+        assertThat( small.get( "c" ), Matchers.nullValue() );
+    }
+
+    @Test
+    public void testAmmoTimeout()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 2000, new HelloCallable( "Remote" ) ),
+            new SimpleExceptionHandler( TimeoutException.class ), 200, TimeUnit.MILLISECONDS );
+        charge.addAmmo( new SleepingWrapperCallable<String>( 50, new HelloCallable( "Local" ) ),
+            NopExceptionHandler.NOOP, 200, TimeUnit.MILLISECONDS );
+        charge.addAmmo( new HelloCallable( "Untimed" ), NopExceptionHandler.NOOP );
+
+        final long start = System.currentTimeMillis();
+
+        ChargeFuture<String> cf = charger.submit( charge, executorServiceProvider );
+
+        assertThat( cf.getResult(), Matchers.contains( "hello Local", "hello Untimed" ) );
+        assertThat( System.currentTimeMillis() - start, Matchers.lessThan( 1000L ) );
+        assertThat( charge.getAmmoFutures().get( 0 ).getFailure(), Matchers.instanceOf( TimeoutException.class ) );
+        assertThat( charge.getAmmoFutures().get( 0 ).getFuture().isCancelled(), Matchers.equalTo( true ) );
+
+        // not handled, fails the charge
+        Charge<String> failing = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        failing.addAmmo( new SleepingWrapperCallable<String>( 2000, new HelloCallable( "Remote" ) ),
+            NopExceptionHandler.NOOP, 100, TimeUnit.MILLISECONDS );
+
+        try
+        {
+            charger.submit( failing, executorServiceProvider ).getResult();
+
+            assertThat( "Timeout should fail the charge!", false );
+        }
+        catch ( TimeoutException e )
+        {
+            // good
+        }
+    }
+
+    @Test
+    public void testAdaptiveCallableExecutor()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        AdaptiveCallableExecutor executor = new AdaptiveCallableExecutor( executorServiceProvider, 2, 1, 10, 100 );
+
+        final AtomicInteger running = new AtomicInteger( 0 );
+
+        final AtomicInteger maxRunning = new AtomicInteger( 0 );
+
+        Callable<String> remote = new Callable<String>()
+        {
+            @Override
+            public String call()
+                throws Exception
+            {
+                final int now = running.incrementAndGet();
+
+                while ( true )
+                {
+                    final int max = maxRunning.get();
+
+                    if ( now <= max || maxRunning.compareAndSet( max, now ) )
+                    {
+                        break;
+                    }
+                }
+
+                try
+                {
+                    Thread.sleep( 50 );
+
+                    return "hello remote";
+                }
+                finally
+                {
+                    running.decrementAndGet();
+                }
+            }
+        };
+
+        Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+
+        for ( int i = 0; i < 8; i++ )
+        {
+            charge.addAmmo( new SimpleUpstreamCallable<String>( "remote", remote ), NopExceptionHandler.NOOP );
+        }
+
+        // untagged ammo is not limited
+        charge.addAmmo( new HelloCallable( "local" ), NopExceptionHandler.NOOP );
+
+        assertThat( charger.submit( charge, executor ).getResult(), Matchers.hasSize( 9 ) );
+        assertThat( maxRunning.get(), Matchers.lessThanOrEqualTo( 3 ) );
+
+        // slots are given back before the ammo arrives
+        assertThat( executor.getInFlight( "remote" ), Matchers.equalTo( 0 ) );
+        assertThat( executor.getLimit( "local" ), Matchers.nullValue() );
+
+        // unhandled failures cut the limit, handled ones are fine answers
+        Charge<String> failing = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            failing.addAmmo( new FailingCallable<String>( new IOException( "Bad gateway!" ) ),
+                NopExceptionHandler.NOOP, 0, TimeUnit.SECONDS, "broken" );
+            failing.addAmmo( new FailingCallable<String>( new FileNotFoundException( "Not found!" ) ),
+                new SimpleExceptionHandler( FileNotFoundException.class ), 0, TimeUnit.SECONDS, "fine" );
+        }
+
+        try
+        {
+            charger.submit( failing, executor ).getResult();
+
+            assertThat( "Charge should fail!", false );
+        }
+        catch ( IOException e )
+        {
+            // good
+        }
+
+        assertThat( executor.getLimit( "broken" ).getLimit(), Matchers.equalTo( 1 ) );
+        assertThat( executor.getLimit( "fine" ).getLimit(), Matchers.greaterThanOrEqualTo( 2 ) );
+
+        // queued ammo rejected by the delegate later arrives failed with the rejection, and is not run
+        final AtomicInteger submitted = new AtomicInteger( 0 );
+
+        AdaptiveCallableExecutor saturated = new AdaptiveCallableExecutor( new CallableExecutor()
+        {
+            @Override
+            public <T> Future<T> submit( final Callable<T> task )
+            {
+                if ( submitted.incrementAndGet() > 1 )
+                {
+                    throw new RejectedExecutionException( "Full!" );
+                }
+
+                return executorServiceProvider.submit( task );
+            }
+        }, 1, 1, 1, 10 );
+
+        Charge<String> queued = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            queued.addAmmo( new SleepingWrapperCallable<String>( 50, new HelloCallable( "Guest" + i ) ),
+                NopExceptionHandler.NOOP, 0, TimeUnit.SECONDS, "saturated" );
+        }
+
+        try
+        {
+            charger.submit( queued, saturated );
+
+            queued.getResult( 2, TimeUnit.SECONDS );
+
+            assertThat( "Charge should fail!", false );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // good
+        }
+
+        assertThat( queued.getCompletedCount(), Matchers.equalTo( 3 ) );
+        assertThat( queued.getAmmoFutures().get( 2 ).getFailure(),
+            Matchers.instanceOf( RejectedExecutionException.class ) );
+
+        // slots are given back before the ammo arrives
+        assertThat( saturated.getInFlight( "saturated" ), Matchers.equalTo( 0 ) );
+    }
+
+    @Test
+    public void testPriorityCallableExecutor()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        PriorityCallableExecutor executor = new PriorityCallableExecutor( 1, 100, TimeUnit.MILLISECONDS );
+
+        try
+        {
+            final CountDownLatch blocker = new CountDownLatch( 1 );
+
+            executor.submit( new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                    throws Exception
+                {
+                    blocker.await();
+
+                    return null;
+                }
+            } );
+
+            final List<String> order = new CopyOnWriteArrayList<String>();
+
+            Charge<String> batch = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+            batch.setPriority( -1 );
+            batch.addAmmo( new RecordingCallable( order, "batch" ), NopExceptionHandler.NOOP );
+
+            Charge<String> interactive = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+            interactive.addAmmo( new RecordingCallable( order, "interactive" ), NopExceptionHandler.NOOP );
+
+            ChargeFuture<String> batchFuture = charger.submit( batch, executor );
+            ChargeFuture<String> interactiveFuture = charger.submit( interactive, executor );
+
+            assertThat( executor.getQueueSize(), Matchers.equalTo( 2 ) );
+
+            blocker.countDown();
+
+            assertThat( batchFuture.getResult(), Matchers.hasSize( 1 ) );
+            assertThat( interactiveFuture.getResult(), Matchers.hasSize( 1 ) );
+            assertThat( order, Matchers.contains( "interactive", "batch" ) );
+
+            // aged for more than an interval, batch overtakes the newcomer
+            final CountDownLatch anotherBlocker = new CountDownLatch( 1 );
+
+            executor.submit( new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                    throws Exception
+                {
+                    anotherBlocker.await();
+
+                    return null;
+                }
+            } );
+
+            order.clear();
+
+            batch = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+            batch.setPriority( -1 );
+            batch.addAmmo( new RecordingCallable( order, "batch" ), NopExceptionHandler.NOOP );
+            batchFuture = charger.submit( batch, executor );
+
+            Thread.sleep( 300 );
+
+            interactive = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+            interactive.addAmmo( new RecordingCallable( order, "interactive" ), NopExceptionHandler.NOOP );
+            interactiveFuture = charger.submit( interactive, executor );
+
+            anotherBlocker.countDown();
+
+            batchFuture.getResult();
+            interactiveFuture.getResult();
+
+            assertThat( order, Matchers.contains( "batch", "interactive" ) );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // extreme priorities and aging intervals do not overflow the ordering
+        PriorityCallableExecutor slowAging = new PriorityCallableExecutor( 1, 1, TimeUnit.DAYS );
+
+        try
+        {
+            final CountDownLatch blocker = new CountDownLatch( 1 );
+
+            slowAging.submit( new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                    throws Exception
+                {
+                    blocker.await();
+
+                    return null;
+                }
+            } );
+
+            final List<String> order = new CopyOnWriteArrayList<String>();
+
+            final List<ChargeFuture<String>> futures = new ArrayList<ChargeFuture<String>>();
+
+            for ( int priority : new int[] { Integer.MIN_VALUE, 0, Integer.MAX_VALUE } )
+            {
+                Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+                charge.setPriority( priority );
+                charge.addAmmo( new RecordingCallable( order, String.valueOf( priority ) ), NopExceptionHandler.NOOP );
+                futures.add( charger.submit( charge, slowAging ) );
+            }
+
+            blocker.countDown();
+
+            for ( ChargeFuture<String> future : futures )
+            {
+                future.getResult();
+            }
+
+            assertThat( order, Matchers.contains( String.valueOf( Integer.MAX_VALUE ), "0",
+                String.valueOf( Integer.MIN_VALUE ) ) );
+        }
+        finally
+        {
+            slowAging.shutdown();
+        }
+    }
+
+    @Test
+    public void testRetry()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        RetryPolicy retryPolicy = new RetryPolicy( 10, 100, TimeUnit.MILLISECONDS, 0.1, 2 );
+
+        Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        charge.setRetryPolicy( retryPolicy );
+        charge.addAmmo( new FlakyCallable( 2 ), new RetryingIOExceptionHandler( 3 ) );
+
+        assertThat( charger.submit( charge, executorServiceProvider ).getResult(), Matchers.contains( "hello flaky" ) );
+        assertThat( charge.getAmmoFutures().get( 0 ).getAttempts(), Matchers.equalTo( 3 ) );
+        assertThat( retryPolicy.getBudget(), Matchers.equalTo( 0 ) );
+
+        // budget exhausted, the failure is handled as usual
+        charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+        charge.setRetryPolicy( retryPolicy );
+        charge.addAmmo( new FlakyCallable( 1 ), new RetryingIOExceptionHandler( 3 ) );
+        charge.addAmmo( new HelloCallable( "stable" ), NopExceptionHandler.NOOP );
+
+        try
+        {
+            charger.submit( charge, executorServiceProvider ).getResult();
+
+            assertThat( "Retry should not be made!", false );
+        }
+        catch ( IOException e )
+        {
+            assertThat( charge.getAmmoFutures().get( 0 ).getAttempts(), Matchers.equalTo( 1 ) );
+        }
+
+        // first attempts refill the budget
+        for ( int i = 0; i < 10; i++ )
+        {
+            retryPolicy.recordAttempt();
+        }
+
+        assertThat( retryPolicy.getBudget(), Matchers.equalTo( 1 ) );
+    }
+
+    @Test
+    public void testLeanSubmission()
+        throws Exception
+    {
+        Charger charger = lookup( Charger.class );
+
+        ExecutorService pool = Executors.newCachedThreadPool();
+
+        try
+        {
+            CallableExecutor lean = CallableExecutors.fromExecutor( pool );
+
+            // the charge is it's own future, and the ammo is it's own too
+            Charge<String> charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE, 2 );
+            charge.addAmmo( new HelloCallable( "Jason" ), NopExceptionHandler.NOOP );
+            charge.addAmmo( new SleepingWrapperCallable<String>( 2000, new HelloCallable( "Remote" ) ),
+                new SimpleExceptionHandler( TimeoutException.class ), 200, TimeUnit.MILLISECONDS );
+
+            ChargeFuture<String> cf = charger.submit( charge, lean );
+
+            assertThat( cf, Matchers.sameInstance( (Object) charge ) );
+            assertThat( cf.getResult(), Matchers.contains( "hello Jason" ) );
+
+            ChargeWrapper<String> first = charge.getAmmoFutures().get( 0 );
+
+            assertThat( first.getFuture(), Matchers.sameInstance( (Object) first ) );
+            assertThat( first.get(), Matchers.equalTo( "hello Jason" ) );
+            assertThat( charge.getAmmoFutures().get( 1 ).getFailure(), Matchers.instanceOf( TimeoutException.class ) );
+            assertThat( charge.getAmmoFutures().get( 1 ).isCancelled(), Matchers.equalTo( true ) );
+
+            // losers are interrupted
+            charge = new Charge<String>( FirstArrivedChargeStrategy.INSTANCE );
+            charge.setLoserPolicy( LoserPolicy.CANCEL_RUNNING );
+            charge.addAmmo( new SleepingWrapperCallable<String>( 8000, new HelloCallable( "Sleepy" ) ),
+                NopExceptionHandler.NOOP );
+            charge.addAmmo( new SleepingWrapperCallable<String>( 100, new HelloCallable( "Sneezy" ) ),
+                NopExceptionHandler.NOOP );
+
+            assertThat( charger.submit( charge, lean ).getResult(), Matchers.contains( "hello Sneezy" ) );
+
+            ChargeWrapper<String> loser = charge.getAmmoFutures().get( 0 );
+
+            try
+            {
+                loser.get( 1000, TimeUnit.MILLISECONDS );
+
+                assertThat( "Loser should be cancelled!", false );
+            }
+            catch ( CancellationException e )
+            {
+                // good
+            }
+
+            assertThat( loser.getFailure(), Matchers.instanceOf( InterruptedException.class ) );
+
+            // counted once all losers are reclaimed
+            Thread.sleep( 200 );
+
+            assertThat( charge.getReclaimedCount(), Matchers.equalTo( 1 ) );
+
+            // the retried ammo is executed again as is
+            charge = new Charge<String>( AllArrivedChargeStrategy.INSTANCE );
+            charge.setRetryPolicy( new RetryPolicy( 10, 100, TimeUnit.MILLISECONDS, 0.1, 2 ) );
+            charge.addAmmo( new FlakyCallable( 1 ), new RetryingIOExceptionHandler( 3 ) );
+
+            assertThat( charger.submit( charge, lean ).getResult(), Matchers.contains( "hello flaky" ) );
+            assertThat( charge.getAmmoFutures().get( 0 ).getAttempts(), Matchers.equalTo( 2 ) );
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testContextPropagation()
+        throws Exception
+    {
+        final ThreadLocal<String> tenant = new ThreadLocal<String>();
+
+        DefaultCharger charger =
+            new DefaultCharger( new ChargeOptions.Builder().setContextPropagators(
+                Arrays.<ContextPropagator<?>> asList( new ThreadLocalContextPropagator<String>( tenant ),
+                    MdcContextPropagator.INSTANCE ) ).build() );
+
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        try
+        {
+            List<Callable<String>> callables = new ArrayList<Callable<String>>();
+
+            for ( int i = 0; i < 3; i++ )
+            {
+                callables.add( new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                    {
+                        return tenant.get();
+                    }
+                } );
+            }
+
+            tenant.set( "acme" );
+            // slf4j-simple has no MDC, but propagating it must not break anything
+            MDC.put( "request", "42" );
+
+            try
+            {
+                ChargeFuture<String> cf =
+                    charger.submit( callables, AllArrivedChargeStrategy.INSTANCE,
+                        CallableExecutors.fromExecutor( pool ) );
+
+                assertThat( cf.getResult(), Matchers.contains( "acme", "acme", "acme" ) );
+            }
+            finally
+            {
+                tenant.remove();
+                MDC.clear();
+            }
+
+            // nothing left behind on the worker
+            assertThat( pool.submit( callables.get( 0 ) ).get(), Matchers.nullValue() );
+
+            // the subject of submitter is bound around ammo of shiro charges
+            Subject subject =
+                new Subject.Builder( new DefaultSecurityManager() ).principals(
+                    new SimplePrincipalCollection( "jason", "test" ) ).authenticated( true ).buildSubject();
+
+            Callable<String> whoAmI = new Callable<String>()
+            {
+                @Override
+                public String call()
+                {
+                    return String.valueOf( SecurityUtils.getSubject().getPrincipal() );
+                }
+            };
+
+            ThreadContext.bind( subject );
+
+            try
+            {
+                Charger shiroCharger = lookup( Charger.class, "shiro" );
+
+                ChargeFuture<String> cf =
+                    shiroCharger.submit( Arrays.asList( whoAmI, whoAmI ), AllArrivedChargeStrategy.INSTANCE,
+                        CallableExecutors.fromExecutor( pool ) );
+
+                assertThat( cf.getResult(), Matchers.contains( "jason", "jason" ) );
+            }
+            finally
+            {
+                ThreadContext.unbindSubject();
+            }
+
+            assertThat( pool.submit( new Callable<Subject>()
+            {
+                @Override
+                public Subject call()
+                {
+                    return ThreadContext.getSubject();
+                }
+            } ).get(), Matchers.nullValue() );
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class NestedCallable
+        implements Callable<Integer>
+    {
+        private final Charger charger;
+
+        private final CallableExecutor executor;
+
+        private final int depth;
+
+        public NestedCallable( final Charger charger, final CallableExecutor executor, final int depth )
+        {
+            this.charger = charger;
+            this.executor = executor;
+            this.depth = depth;
+        }
+
+        @Override
+        public Integer call()
+            throws Exception
+        {
+            if ( depth == 0 )
+            {
+                Thread.sleep( 10 );
+
+                return 1;
+            }
+
+            final Charge<Integer> charge = new Charge<Integer>( AllArrivedChargeStrategy.INSTANCE );
+            charge.setWaitPolicy( WaitPolicy.HELP );
+
+            for ( int i = 0; i < 3; i++ )
+            {
+                charge.addAmmo( new NestedCallable( charger, executor, depth - 1 ), NopExceptionHandler.NOOP );
+            }
+
+            int leaves = 0;
+
+            for ( Integer count : charger.submit( charge, executor ).getResult() )
+            {
+                leaves += count;
+            }
+
+            return leaves;
+        }
+    }
+
+    private static class RecordingCallable
+        implements Callable<String>
+    {
+        private final List<String> order;
+
+        private final String name;
+
+        public RecordingCallable( final List<String> order, final String name )
+        {
+            this.order = order;
+            this.name = name;
+        }
+
+        @Override
+        public String call()
+        {
+            order.add( name );
+
+            return name;
+        }
+    }
+
+    private static class FlakyCallable
+        implements Callable<String>
+    {
+        private final AtomicInteger failuresLeft;
+
+        public FlakyCallable( final int failures )
+        {
+            this.failuresLeft = new AtomicInteger( failures );
+        }
+
+        @Override
+        public String call()
+            throws Exception
+        {
+            if ( failuresLeft.getAndDecrement() > 0 )
+            {
+                throw new IOException( "Connection reset!" );
+            }
+
+            return "hello flaky";
+        }
+    }
+
+    private static class RetryingIOExceptionHandler
+        implements RetryingExceptionHandler
+    {
+        private final int maxAttempts;
+
+        public RetryingIOExceptionHandler( final int maxAttempts )
+        {
+            this.maxAttempts = maxAttempts;
+        }
+
+        @Override
+        public boolean retry( final Exception ex, final int attempt )
+        {
+            return ex instanceof IOException && attempt < maxAttempts;
+        }
+
+        @Override
+        public boolean handle( final Exception ex )
+        {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package org.sonatype.sisu.charger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.sisu.charger.internal.Charge;
+import org.sonatype.sisu.charger.internal.ChargeWrapper;
+
+@Singleton
+@Named( "recording" )
+public class RecordingChargeListener
+    extends AbstractChargeListener
+{
+    private final List<String> events = new CopyOnWriteArrayList<String>();
+
+    public List<String> getEvents()
+    {
+        return events;
+    }
+
+    @Override
+    public void chargeSubmitted( final Charge<?> charge )
+    {
+        events.add( "submitted" );
+    }
+
+    @Override
+    public void ammoFinished( final Charge<?> charge, final ChargeWrapper<?> ammo, final long executionNanos )
+    {
+        events.add( "finished" + ammo.getIndex() );
+    }
+
+    @Override
+    public void ammoFailed( final Charge<?> charge, final ChargeWrapper<?> ammo, final Throwable failure,
+                            final long executionNanos )
+    {
+        events.add( "failed" + ammo.getIndex() );
+    }
+
+    @Override
+    public void chargeDecided( final Charge<?> charge )
+    {
+        events.add( "decided" );
+    }
+
+    @Override
+    public void chargeCancelled( final Charge<?> charge )
+    {
+        events.add( "cancelled" );
+    }
+}